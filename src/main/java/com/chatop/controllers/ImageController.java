@@ -0,0 +1,188 @@
+package com.chatop.controllers;
+
+import com.chatop.services.image_storage.ImageFileCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.Parameters;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Serves the stored images straight from their file channel. On Tomcat the body is handed to the connector's
+ * sendfile support, the bytes then go from the page cache to the socket without entering the JVM.
+ */
+@RestController
+@RequestMapping("/api")
+@Slf4j
+@Tag(name = "Image API", description = "Rental images of ChâTop application")
+public class ImageController {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, no-cache";
+
+    private final ImageFileCache imageFileCache;
+
+    public ImageController(ImageFileCache imageFileCache) {
+        this.imageFileCache = imageFileCache;
+    }
+
+    @Operation(summary = "Get a rental image", description = """
+            Serves a stored image. Content-addressed images are cacheable forever; single byte ranges, \\
+            If-None-Match and If-Range are supported.""",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Whole image",
+                            content = {@Content(mediaType = "image/jpeg"), @Content(mediaType = "image/png")}),
+                    @ApiResponse(responseCode = "206", description = "Requested byte range of the image"),
+                    @ApiResponse(responseCode = "304", description = "Image not modified"),
+                    @ApiResponse(responseCode = "404", description = "Image not found",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "416", description = "Requested range not satisfiable")
+            })
+    @Parameters(@Parameter(name = "fileName", description = "File name of the image",
+            example = "5f1c0c3b8e7a4f3bd2ab8d3cd6a4d6a3e0c1f6b1a0e36d2a42ad7fd3e1d2b9c4.jpg", required = true))
+    @GetMapping("/images/{fileName:.+}")
+    public void getImage(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageFileCache.OpenImage image = imageFileCache.acquire(fileName);
+        try {
+            response.setHeader(HttpHeaders.ETAG, image.etag());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, image.immutable() ? IMMUTABLE : REVALIDATE);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, image.lastModified());
+
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), image.etag())) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            long start = 0;
+            long end = image.size() - 1;
+            long[] bounds = requestedRange(request.getHeader(HttpHeaders.RANGE), request.getHeader(HttpHeaders.IF_RANGE),
+                    image.etag(), image.size());
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + image.size());
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, image.size()));
+            }
+
+            long length = end - start + 1;
+            response.setContentType(image.contentType());
+            response.setContentLengthLong(length);
+            if ("HEAD".equals(request.getMethod()) || length == 0) {
+                return;
+            }
+
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                request.setAttribute(SENDFILE_FILENAME, image.path().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, image.offset() + start);
+                request.setAttribute(SENDFILE_END, image.offset() + end + 1);
+                return;
+            }
+            WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = image.channel().transferTo(image.offset() + position, end + 1 - position, output);
+                if (transferred <= 0) {
+                    log.error("Image {} truncated while being served", fileName);
+                    break;
+                }
+                position += transferred;
+            }
+        } finally {
+            image.release();
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The range to serve, the {@code Range} header being ignored when an {@code If-Range} validator does not match.
+     *
+     * @return the inclusive bounds, an empty array for the whole image and {@code null} when the range cannot be satisfied
+     */
+    static long[] requestedRange(String range, String ifRange, String etag, long size) {
+        if (range == null || (ifRange != null && !ifRange.equals(etag))) {
+            return new long[0];
+        }
+        return parseRange(range, size);
+    }
+
+    /**
+     * Parses a single {@code bytes=} range.
+     *
+     * @return the inclusive bounds, an empty array when the header is ignored (multiple or malformed ranges)
+     * and {@code null} when the range cannot be satisfied
+     */
+    static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (end < start) {
+                    return new long[0];
+                }
+            }
+            if (start >= size) {
+                return null;
+            }
+            return new long[]{start, Math.min(end, size - 1)};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.chatop.controllers;
 
 import com.chatop.dtos.MessageDTO;
 import com.chatop.dtos.MessageResponse;
+import com.chatop.dtos.MessagesPageResponse;
 import com.chatop.exceptions.FiledNotNullOrEmptyException;
 import com.chatop.services.message.MessageService;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.Parameters;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -89,4 +92,73 @@ public class MessageController {
         return new ResponseEntity<>(new MessageResponse("Message send with success"), HttpStatusCode.valueOf(201));
     }
 
+    @Operation(summary = "Get the messages sent about a rental", description = "Get one page of the messages sent to the owner about the rental, newest first. Only the owner of the rental can read them",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Page of messages retrieved successfully",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = MessagesPageResponse.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                        "messages": [
+                                            {
+                                                "id": 12,
+                                                "rental_id": 1,
+                                                "rental_name": "Appartement 1",
+                                                "user_id": 2,
+                                                "user_name": "Jane Doe",
+                                                "user_email": "jane@chatop.com",
+                                                "message": "Hello, I'm interested by your rental",
+                                                "created_at": "2023-08-31T12:00:00"
+                                            }
+                                        ],
+                                        "next": "MXwyMDIzLTA4LTMxVDEyOjAwfDEy"
+                                    }"""))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Invalid pagination cursor",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized, or not the owner of the rental",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "404", description = "Rental not found",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "id", description = "Id of the Rental", example = "1", required = true, schema = @Schema(type = "integer")),
+            @Parameter(name = "cursor", description = "Opaque cursor returned as `next` by the previous page", schema = @Schema(type = "string")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/rentals/{id}/messages")
+    public ResponseEntity<MessagesPageResponse> retrieveRentalMessages(
+            @PathVariable Integer id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        MessagesPageResponse page = messageService.retrieveRentalMessages(id, cursor, limit);
+
+        log.info("Messages of rental id:{} retrieved successfully", id);
+        return ResponseEntity.ok(page);
+    }
+
+    @Operation(summary = "Get the inbox of the authenticated user", description = "Get one page of the messages sent about all the rentals of the authenticated user, rental by rental and newest first within a rental",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Page of messages retrieved successfully",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = MessagesPageResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Invalid pagination cursor",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "cursor", description = "Opaque cursor returned as `next` by the previous page", schema = @Schema(type = "string")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/messages/inbox")
+    public ResponseEntity<MessagesPageResponse> retrieveInbox(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        MessagesPageResponse page = messageService.retrieveInbox(cursor, limit);
+
+        log.info("Inbox retrieved successfully");
+        return ResponseEntity.ok(page);
+    }
+
 }
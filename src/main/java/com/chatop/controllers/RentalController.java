@@ -5,6 +5,9 @@ import com.chatop.exceptions.FiledNotNullOrEmptyException;
 import com.chatop.exceptions.InvalidImageFormatException;
 import com.chatop.exceptions.RentalNotFondException;
 import com.chatop.exceptions.UnauthorizedUserException;
+import com.chatop.services.rental.RentalCatalogueSnapshot;
+import com.chatop.services.rental.RentalGalleryService;
+import com.chatop.services.rental.RentalImportService;
 import com.chatop.services.rental.RentalService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -15,12 +18,21 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 
 @RequestMapping("/api")
 @Slf4j
@@ -29,12 +41,19 @@ import java.io.IOException;
 public class RentalController {
 
     private final RentalService rentalService;
+    private final RentalCatalogueSnapshot rentalCatalogueSnapshot;
+    private final RentalImportService rentalImportService;
+    private final RentalGalleryService rentalGalleryService;
 
-    public RentalController(RentalService rentalService) {
+    public RentalController(RentalService rentalService, RentalCatalogueSnapshot rentalCatalogueSnapshot, RentalImportService rentalImportService,
+                            RentalGalleryService rentalGalleryService) {
         this.rentalService = rentalService;
+        this.rentalCatalogueSnapshot = rentalCatalogueSnapshot;
+        this.rentalImportService = rentalImportService;
+        this.rentalGalleryService = rentalGalleryService;
     }
 
-    @Operation(summary = "Get all rentals", description = "Get all rentals",
+    @Operation(summary = "Get all rentals", description = "Get all rentals, or a single page of rentals (newest first) with a `next` cursor when `cursor` or `limit` is given",
             responses = {
                     @ApiResponse(responseCode = "200", description = "All Rentals retrieved successfully",
                             content ={@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsResponse.class),
@@ -61,6 +80,8 @@ public class RentalController {
                                     }
                                     """, summary = "Rentals retrieved successfully"))
                             }),
+                    @ApiResponse(responseCode = "304", description = "Rentals not modified since the ETag (If-None-Match) or date (If-Modified-Since) sent by the client",
+                            content = @Content),
                     @ApiResponse(responseCode = "404", description = "Rentals not found",
                             content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalNotFondException.class),
                                     examples = @ExampleObject(value = """
@@ -84,8 +105,35 @@ public class RentalController {
                                     }""", summary = "Unauthorized User"))}
                     ),
             })
+    @Parameters({
+            @Parameter(name = "cursor", description = "Opaque cursor returned as `next` by the previous page, enables keyset pagination",
+                    schema = @Schema(type = "string")),
+            @Parameter(name = "limit", description = "Page size when paginating (default 20, max 100)", example = "20",
+                    schema = @Schema(type = "integer"))
+    })
     @GetMapping("/rentals")
-    public ResponseEntity<RentalsResponse> retrieveAllRentals() {
+    public ResponseEntity<?> retrieveAllRentals(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+
+        if (cursor != null || limit != null) {
+            RentalsPageResponse page = rentalService.retrieveRentalsPage(cursor, limit);
+
+            log.info("Rentals page retrieved successfully");
+            return ResponseEntity.ok(page);
+        }
+
+        RentalCatalogueSnapshot.Snapshot snapshot = rentalCatalogueSnapshot.current();
+        if (snapshot != null) {
+            return writeSnapshot(snapshot, webRequest);
+        }
+
+        RentalsVersion version = rentalService.retrieveRentalsVersion();
+        if (webRequest.checkNotModified(weakETag(version.count(), version.lastUpdatedAt()), epochMillis(version.lastUpdatedAt()))) {
+            log.info("Rentals not modified");
+            return null;
+        }
 
         RentalsResponse rentals = rentalService.retrieveAllRentals();
 
@@ -93,6 +141,31 @@ public class RentalController {
         return ResponseEntity.ok(rentals);
     }
 
+    @Operation(summary = "Stream all rentals", description = "Stream the whole rental catalogue, rows are written to the response as they are read from the database",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Rentals streamed successfully",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsResponse.class))}),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                      "timestamp": "2023-08-31T12:00:00.000+00:00",
+                                      "status": 401,
+                                      "error": "Unauthorized",
+                                      "message": "Unauthorized User, user not logged in",
+                                      "path": "/api/rentals/stream"
+                                    }""", summary = "Unauthorized User"))}
+                    ),
+            })
+    @GetMapping(value = "/rentals/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllRentals() {
+
+        StreamingResponseBody body = rentalService::streamAllRentals;
+
+        log.info("Rentals streaming started");
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @Operation(summary = "Get a rental by its id", description = "Get a rental by its id",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Rental retrieved successfully",
@@ -108,6 +181,8 @@ public class RentalController {
                                     }
                                     """, summary = "Rental retrieved successfully"))
                             }),
+                    @ApiResponse(responseCode = "304", description = "Rental not modified since the ETag (If-None-Match) or date (If-Modified-Since) sent by the client",
+                            content = @Content),
                     @ApiResponse(responseCode = "404", description = "Rental not found",
                             content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalNotFondException.class),
                                     examples = @ExampleObject(value = """
@@ -135,15 +210,20 @@ public class RentalController {
             description = "Id of Rental to be searched", example = "1", required = true,
             schema = @Schema(type = "integer"), content = @Content(mediaType = "application/json", examples = @ExampleObject(value = "1"))))
     @GetMapping("/rentals/{id}")
-    public ResponseEntity<RentalDTO> retrieveRentalById(@PathVariable Integer id) {
+    public ResponseEntity<RentalDTO> retrieveRentalById(@PathVariable Integer id, WebRequest webRequest) {
 
         RentalDTO rental = rentalService.retrieveRentalById(id);
 
+        if (webRequest.checkNotModified(weakETag(rental.id(), rental.updated_at()), epochMillis(rental.updated_at()))) {
+            log.info("Rental not modified with id:{}", id);
+            return null;
+        }
+
         log.info("Rental retrieved successfully with id:{}", id);
         return ResponseEntity.ok(rental);
     }
 
-    @Operation(summary = "Update a rental by its id", description = "Update a rental by its id",
+    @Operation(summary = "Update a rental by its id", description = "Update a rental by its id, the `uploadId` of a committed chunked upload replaces its picture",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Rental updated by its id",
                             content ={ @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class),
@@ -173,7 +253,9 @@ public class RentalController {
                                       "error": "Unauthorized",
                                       "message": "Unauthorized User, user not logged in",
                                       "path": "/api/rentals/1"
-                                    }""", summary = "Unauthorized User"))})
+                                    }""", summary = "Unauthorized User"))}),
+                    @ApiResponse(responseCode = "409", description = "Rental modified by another request while it was being updated",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
 
             })
     @Parameters(@Parameter(name = "id", description = "Id of Rental to be updated", example = "1", required = true,
@@ -191,7 +273,52 @@ public class RentalController {
         return new ResponseEntity<>(messageResponse, HttpStatusCode.valueOf(200));
     }
 
-    @Operation(summary = "Create a new rental", description = "Create a new rental, image is required",
+    @Operation(summary = "Partially update a rental by its id", description = """
+            Only the given fields are written. The version returned by the last read of the rental is required, \
+            the update is rejected with 409 when the rental has been modified since.""",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Rental patched, new state returned",
+                            content ={ @Content(mediaType = "application/json", schema = @Schema(implementation = RentalDTO.class))}),
+                    @ApiResponse(responseCode = "400", description = "Version missing or invalid fields",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "404", description = "Rental not found by given id",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "409", description = "Rental modified since the given version",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                      "type": "https://chatop.com/errors",
+                                      "title": "Rental modified concurrently",
+                                      "status": 409,
+                                      "detail": "Rental with id:{1} was modified concurrently, reload it and retry",
+                                      "instance": "/api/rentals/1",
+                                      "error": "Rental modified concurrently"
+                                    }""", summary = "Version conflict"))
+                            }),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters(@Parameter(name = "id", description = "Id of Rental to be patched", example = "1", required = true,
+            schema = @Schema(type = "integer"), content = @Content(mediaType = "application/json", examples = @ExampleObject(value = "1"))))
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Fields to update and the expected version", required = true,
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = RentalPatchRequest.class),
+                    examples = @ExampleObject(value = """
+                            {
+                              "version": 3,
+                              "price": 950
+                            }""")))
+    @PatchMapping(value = "/rentals/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public ResponseEntity<RentalDTO> patchRentalById(
+            @PathVariable Integer id,
+            @RequestBody RentalPatchRequest rentalPatchRequest) {
+
+        RentalDTO rental = rentalService.patchRental(id, rentalPatchRequest);
+
+        log.info("Rental patched successfully with id:{}", id);
+        return ResponseEntity.ok(rental);
+    }
+
+    @Operation(summary = "Create a new rental", description = "Create a new rental, an image is required: either `picture` or the `uploadId` of a committed chunked upload",
             responses = {
                     @ApiResponse(responseCode = "201", description = "Rental created successfully",
                             content ={ @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class),
@@ -252,16 +379,18 @@ public class RentalController {
     @PostMapping("/rentals")
     public ResponseEntity<MessageResponse> createRental(
             @ModelAttribute("rental") RentalRequest rentalRequest) throws UnauthorizedUserException, IOException {
-        String contentType = rentalRequest.getPicture().getContentType();
+        if (rentalRequest.getPicture() != null) {
+            String contentType = rentalRequest.getPicture().getContentType();
 
-        if (contentType == null || contentType.isEmpty()) {
-            log.error("The content type of the image is unknown.");
-            throw new InvalidImageFormatException("The content type of the image is unknown.");
-        }
+            if (contentType == null || contentType.isEmpty()) {
+                log.error("The content type of the image is unknown.");
+                throw new InvalidImageFormatException("The content type of the image is unknown.");
+            }
 
-        if (!(contentType.equals("image/jpeg") || contentType.equals("image/png") || contentType.equals("image/jpg"))) {
-            log.error("Only images in JPG, PNG or JPEG format are accepted.");
-            throw new InvalidImageFormatException("Only images in JPG, PNG or JPEG format are accepted.");
+            if (!(contentType.equals("image/jpeg") || contentType.equals("image/png") || contentType.equals("image/jpg"))) {
+                log.error("Only images in JPG, PNG or JPEG format are accepted.");
+                throw new InvalidImageFormatException("Only images in JPG, PNG or JPEG format are accepted.");
+            }
         }
 
         if(rentalRequest.getName() == null ||
@@ -270,7 +399,7 @@ public class RentalController {
                 rentalRequest.getPrice() == 0 ||
                 rentalRequest.getDescription() == null ||
                 rentalRequest.getDescription().isEmpty() ||
-                rentalRequest.getPicture() == null ) {
+                (rentalRequest.getPicture() == null && rentalRequest.getUploadId() == null)) {
             log.error("Fields cannot be null or empty");
             throw new FiledNotNullOrEmptyException("Fields cannot be null or empty");
         }
@@ -280,5 +409,170 @@ public class RentalController {
         return new ResponseEntity<>(messageResponse, HttpStatusCode.valueOf(201));
     }
 
+    @Operation(summary = "Import rentals in bulk", description = """
+            Import rentals owned by the authenticated user from an NDJSON body (one JSON rental per line) or a CSV body \
+            (header line first). Fields: name, surface, price, description, picture (URL of an already stored image, optional), \
+            latitude and longitude (optional). Rows are inserted in chunks, invalid rows are reported and skipped.""",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Import report, one result per row",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = RentalImportReport.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                      "imported": 1,
+                                      "failed": 1,
+                                      "results": [
+                                        { "line": 1, "status": "IMPORTED", "id": 42, "error": null },
+                                        { "line": 2, "status": "FAILED", "id": null, "error": "Fields cannot be null or empty" }
+                                      ]
+                                    }
+                                    """, summary = "Import report"))
+                            }),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Rentals to import", required = true,
+            content = {
+                    @Content(mediaType = RentalImportService.NDJSON, examples = @ExampleObject(value = """
+                            {"name": "Appartement 1", "surface": 100, "price": 900, "description": "Appartement 1"}
+                            {"name": "Appartement 2", "surface": 200, "price": 2000, "description": "Appartement 2", "latitude": 48.85, "longitude": 2.35}
+                            """)),
+                    @Content(mediaType = RentalImportService.CSV, examples = @ExampleObject(value = """
+                            name,surface,price,description,picture,latitude,longitude
+                            Appartement 1,100,900,"Appartement 1, balcon",,,
+                            """))
+            })
+    @PostMapping(value = "/rentals/import", consumes = {RentalImportService.NDJSON, RentalImportService.CSV})
+    public ResponseEntity<RentalImportReport> importRentals(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) throws IOException {
+
+        RentalImportReport report = rentalImportService.importRentals(body, contentType);
+
+        log.info("Rentals imported: {} imported, {} failed", report.imported(), report.failed());
+        return ResponseEntity.ok(report);
+    }
+
+    @Operation(summary = "Add pictures to the gallery of a rental", description = """
+            Add one or more JPG or PNG pictures after the current gallery pictures of a rental owned by the authenticated user. \
+            The pictures are stored concurrently and recorded together, the rental is returned with its whole gallery.""",
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Pictures added, rental returned with its gallery",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = RentalDTO.class))}),
+                    @ApiResponse(responseCode = "400", description = "Pictures missing or too many pictures at once",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized, or not the owner of the rental",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "404", description = "Rental not found by given id",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "405", description = "Invalid image format",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters(@Parameter(name = "id", description = "Id of the Rental", example = "1", required = true,
+            schema = @Schema(type = "integer")))
+    @PostMapping(value = "/rentals/{id}/pictures", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<RentalDTO> addRentalPictures(
+            @PathVariable Integer id,
+            @RequestParam("pictures") List<MultipartFile> pictures) throws IOException {
+
+        RentalDTO rental = rentalGalleryService.addPictures(id, pictures);
+
+        log.info("{} pictures added to rental id:{}", pictures.size(), id);
+        return new ResponseEntity<>(rental, HttpStatusCode.valueOf(201));
+    }
+
+    @Operation(summary = "Get the rentals of a user", description = "Get one page of the rentals owned by the given user, newest first",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Page of rentals retrieved successfully",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsPageResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Invalid pagination cursor",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "404", description = "User not found",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "id", description = "Id of the owner", example = "1", required = true, schema = @Schema(type = "integer")),
+            @Parameter(name = "cursor", description = "Opaque cursor returned as `next` by the previous page", schema = @Schema(type = "string")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/user/{id}/rentals")
+    public ResponseEntity<RentalsPageResponse> retrieveOwnerRentals(
+            @PathVariable Integer id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        RentalsPageResponse page = rentalService.retrieveOwnerRentalsPage(id, cursor, limit);
+
+        log.info("Rentals of user id:{} retrieved successfully", id);
+        return ResponseEntity.ok(page);
+    }
+
+    @Operation(summary = "Get the rentals of the authenticated user", description = "Get one page of the rentals owned by the authenticated user, newest first",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Page of rentals retrieved successfully",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsPageResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Invalid pagination cursor",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized",
+                            content ={@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "cursor", description = "Opaque cursor returned as `next` by the previous page", schema = @Schema(type = "string")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/user/me/rentals")
+    public ResponseEntity<RentalsPageResponse> retrieveMyRentals(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        RentalsPageResponse page = rentalService.retrieveMyRentalsPage(cursor, limit);
+
+        log.info("Rentals of the authenticated user retrieved successfully");
+        return ResponseEntity.ok(page);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> writeSnapshot(RentalCatalogueSnapshot.Snapshot snapshot, WebRequest webRequest) {
+        if (webRequest.checkNotModified(weakETag(snapshot.count(), snapshot.lastUpdatedAt()), epochMillis(snapshot.lastUpdatedAt()))) {
+            log.info("Rentals not modified");
+            return null;
+        }
+        if (snapshot.count() == 0) {
+            throw new RentalNotFondException("Rentals not found");
+        }
 
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        log.info("Rentals retrieved successfully from the catalogue snapshot");
+        if (acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            // written block by block from the snapshot, the encoded document is never held in one array
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .contentLength(snapshot.gzipLength())
+                    .body(snapshot::writeGzip);
+        }
+        return response.contentLength(snapshot.jsonLength()).body(snapshot::writeJson);
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static String weakETag(long discriminator, LocalDateTime updatedAt) {
+        return "W/\"%d-%d\"".formatted(discriminator, epochMillis(updatedAt));
+    }
+
+    private static long epochMillis(LocalDateTime updatedAt) {
+        return updatedAt == null ? -1 : updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
 }
@@ -0,0 +1,260 @@
+package com.chatop.controllers;
+
+import com.chatop.dtos.RentalStatisticsResponse;
+import com.chatop.dtos.RentalSuggestionsResponse;
+import com.chatop.dtos.RentalsResponse;
+import com.chatop.dtos.RentalsSearchResponse;
+import com.chatop.services.rental_search.RentalSearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.Parameters;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@Slf4j
+@Tag(name = "Rental Search API", description = "Rental search API for ChâTop application, served from in-memory indexes")
+public class RentalSearchController {
+
+    private final RentalSearchService rentalSearchService;
+
+    public RentalSearchController(RentalSearchService rentalSearchService) {
+        this.rentalSearchService = rentalSearchService;
+    }
+
+    @Operation(summary = "Search rentals by price and surface range", description = "Search rentals by price and surface range",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Rentals matching the ranges",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsSearchResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Invalid search parameter",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                      "type": "https://chatop.com/errors",
+                                      "title": "Invalid search parameter",
+                                      "status": 400,
+                                      "detail": "Unknown sort 'name', expected one of price, -price, surface, -surface",
+                                      "instance": "/api/rentals/search",
+                                      "error": "Invalid search parameter"
+                                    }""", summary = "Invalid search parameter"))
+                            }),
+                    @ApiResponse(responseCode = "503", description = "Search index still loading",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "minPrice", description = "Minimum price (inclusive)", example = "500", schema = @Schema(type = "number")),
+            @Parameter(name = "maxPrice", description = "Maximum price (inclusive)", example = "1500", schema = @Schema(type = "number")),
+            @Parameter(name = "minSurface", description = "Minimum surface (inclusive)", example = "30", schema = @Schema(type = "number")),
+            @Parameter(name = "maxSurface", description = "Maximum surface (inclusive)", example = "120", schema = @Schema(type = "number")),
+            @Parameter(name = "sort", description = "price, -price, surface or -surface", example = "price", schema = @Schema(type = "string")),
+            @Parameter(name = "offset", description = "Number of matches to skip", example = "0", schema = @Schema(type = "integer")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/rentals/search")
+    public ResponseEntity<RentalsSearchResponse> searchRentals(
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Double minSurface,
+            @RequestParam(required = false) Double maxSurface,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
+
+        RentalsSearchResponse response = rentalSearchService.searchByRange(minPrice, maxPrice, minSurface, maxSurface, sort, offset, limit);
+
+        log.info("Rentals searched successfully by range");
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Full-text search over rental name and description", description = "Full-text search over rental name and description, best matches first. Accents and case are ignored.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Rentals matching the text, best matches first",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsSearchResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Search text is empty",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "503", description = "Search index still loading",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "q", description = "Words to search for", example = "balcon parking", required = true, schema = @Schema(type = "string")),
+            @Parameter(name = "offset", description = "Number of matches to skip", example = "0", schema = @Schema(type = "integer")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/rentals/search/text")
+    public ResponseEntity<RentalsSearchResponse> searchRentalsByText(
+            @RequestParam(name = "q", required = false) String text,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
+
+        RentalsSearchResponse response = rentalSearchService.searchByText(text, offset, limit);
+
+        log.info("Rentals searched successfully by text");
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Suggest rental names", description = "Suggest rental names starting with the given prefix, most recently updated first. Accents and case are ignored.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Suggested rental names",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalSuggestionsResponse.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                    "suggestions": [
+                                        {
+                                            "id": 12,
+                                            "name": "Appartement Montmartre"
+                                        },
+                                        {
+                                            "id": 3,
+                                            "name": "Appartement 1"
+                                        }
+                                    ]
+                                    }
+                                    """, summary = "Suggestions for 'appa'"))
+                            }),
+                    @ApiResponse(responseCode = "400", description = "Prefix is empty",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "503", description = "Search index still loading",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "prefix", description = "Beginning of the rental name", example = "appa", required = true, schema = @Schema(type = "string")),
+            @Parameter(name = "limit", description = "Number of suggestions (default 10, max 20)", example = "10", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/rentals/suggest")
+    public ResponseEntity<RentalSuggestionsResponse> suggestRentalNames(
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) Integer limit) {
+
+        RentalSuggestionsResponse response = rentalSearchService.suggestNames(prefix, limit);
+
+        log.info("Rental names suggested successfully");
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Search rentals in a bounding box", description = "Search located rentals inside a latitude / longitude box, e.g. the visible part of a map",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Rentals inside the box, ordered by id",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsSearchResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Invalid or missing box coordinates",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "503", description = "Search index still loading",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "minLat", description = "South edge", example = "48.80", required = true, schema = @Schema(type = "number")),
+            @Parameter(name = "maxLat", description = "North edge", example = "48.90", required = true, schema = @Schema(type = "number")),
+            @Parameter(name = "minLon", description = "West edge", example = "2.25", required = true, schema = @Schema(type = "number")),
+            @Parameter(name = "maxLon", description = "East edge", example = "2.42", required = true, schema = @Schema(type = "number")),
+            @Parameter(name = "offset", description = "Number of matches to skip", example = "0", schema = @Schema(type = "integer")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/rentals/search/box")
+    public ResponseEntity<RentalsSearchResponse> searchRentalsInBox(
+            @RequestParam(name = "minLat", required = false) Double minLatitude,
+            @RequestParam(name = "maxLat", required = false) Double maxLatitude,
+            @RequestParam(name = "minLon", required = false) Double minLongitude,
+            @RequestParam(name = "maxLon", required = false) Double maxLongitude,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
+
+        RentalsSearchResponse response = rentalSearchService.searchInBox(minLatitude, maxLatitude, minLongitude, maxLongitude, offset, limit);
+
+        log.info("Rentals searched successfully in box");
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Search rentals near a point", description = "Search located rentals within a radius around a point, nearest first",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Rentals within the radius, nearest first",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsSearchResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Invalid or missing point or radius",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "503", description = "Search index still loading",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "lat", description = "Latitude of the point", example = "48.8566", required = true, schema = @Schema(type = "number")),
+            @Parameter(name = "lon", description = "Longitude of the point", example = "2.3522", required = true, schema = @Schema(type = "number")),
+            @Parameter(name = "radiusKm", description = "Radius in kilometers (max 500)", example = "5", required = true, schema = @Schema(type = "number")),
+            @Parameter(name = "offset", description = "Number of matches to skip", example = "0", schema = @Schema(type = "integer")),
+            @Parameter(name = "limit", description = "Page size (default 20, max 100)", example = "20", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/rentals/search/nearby")
+    public ResponseEntity<RentalsSearchResponse> searchRentalsNearby(
+            @RequestParam(name = "lat", required = false) Double latitude,
+            @RequestParam(name = "lon", required = false) Double longitude,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
+
+        RentalsSearchResponse response = rentalSearchService.searchNearby(latitude, longitude, radiusKm, offset, limit);
+
+        log.info("Rentals searched successfully nearby");
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Get rentals similar to a rental", description = "Get the rentals closest to the given one by price, surface, price per m² and age",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Similar rentals, most similar first",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalsResponse.class))}),
+                    @ApiResponse(responseCode = "404", description = "Rental not found",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "503", description = "Search index still loading",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "id", description = "Id of the reference rental", example = "1", required = true, schema = @Schema(type = "integer")),
+            @Parameter(name = "k", description = "Number of similar rentals (default 6, max 50)", example = "6", schema = @Schema(type = "integer"))
+    })
+    @GetMapping("/rentals/{id}/similar")
+    public ResponseEntity<RentalsResponse> retrieveSimilarRentals(
+            @PathVariable Integer id,
+            @RequestParam(required = false) Integer k) {
+
+        RentalsResponse response = rentalSearchService.findSimilar(id, k);
+
+        log.info("Similar rentals retrieved successfully for id:{}", id);
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Get rental market statistics", description = "Get count, price and surface min / max / mean, price per m² percentiles and a price histogram over all rentals",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Rental market statistics",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RentalStatisticsResponse.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                      "count": 2,
+                                      "price": { "min": 900, "max": 2000, "mean": 1450 },
+                                      "surface": { "min": 100, "max": 200, "mean": 150 },
+                                      "price_per_m2_percentiles": { "p10": 9.0, "p25": 9.0, "p50": 9.0, "p75": 9.0, "p90": 9.0 },
+                                      "price_histogram": [
+                                        { "from": 0, "to": 250, "count": 0 },
+                                        { "from": 5000, "to": null, "count": 0 }
+                                      ]
+                                    }
+                                    """, summary = "Rental market statistics"))
+                            }),
+                    @ApiResponse(responseCode = "503", description = "Search index still loading",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @GetMapping("/rentals/stats")
+    public ResponseEntity<RentalStatisticsResponse> retrieveRentalStatistics() {
+
+        RentalStatisticsResponse response = rentalSearchService.retrieveStatistics();
+
+        log.info("Rental statistics retrieved successfully");
+        return ResponseEntity.ok(response);
+    }
+}
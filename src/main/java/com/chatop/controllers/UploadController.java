@@ -0,0 +1,127 @@
+package com.chatop.controllers;
+
+import com.chatop.dtos.UploadRequest;
+import com.chatop.dtos.UploadResponse;
+import com.chatop.services.upload.ChunkedUploadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.Parameters;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api")
+@Slf4j
+@Tag(name = "Upload API", description = "Resumable chunked picture uploads for ChâTop application")
+public class UploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public UploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @Operation(summary = "Start a chunked upload", description = """
+            Declare the size of the picture, then PUT its chunks of `chunk_size` bytes (the last one may be shorter) \\
+            in any order, and commit. The committed `upload_id` is given once as `uploadId` instead of `picture` when creating \\
+            or updating a rental.""",
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Upload created",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UploadResponse.class),
+                                    examples = @ExampleObject(value = """
+                                    {
+                                      "upload_id": "0b5c4f3e-8d4e-4f6b-9a57-5b0f3c1e2d7a",
+                                      "status": "OPEN",
+                                      "size": 2500000,
+                                      "chunk_size": 1048576,
+                                      "chunks": 3,
+                                      "missing_chunks": [0, 1, 2],
+                                      "picture": null
+                                    }""", summary = "Upload created"))
+                            }),
+                    @ApiResponse(responseCode = "400", description = "Size missing or too large",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "401", description = "Unauthorized",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "429", description = "Too many uploads in progress for the user or the server",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadResponse> createUpload(@RequestBody UploadRequest uploadRequest) throws IOException {
+        UploadResponse upload = chunkedUploadService.createUpload(uploadRequest.getSize());
+
+        log.info("Upload created with id:{}", upload.upload_id());
+        return new ResponseEntity<>(upload, HttpStatusCode.valueOf(201));
+    }
+
+    @Operation(summary = "Upload one chunk", description = "Write a chunk at its offset, a chunk can be sent again after a failure",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Chunk written, remaining chunks listed",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UploadResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Wrong chunk index or size, or upload committed or being committed",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "404", description = "Upload not found or expired",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters({
+            @Parameter(name = "uploadId", description = "Id of the upload", required = true),
+            @Parameter(name = "index", description = "Index of the chunk, from 0", example = "0", required = true)
+    })
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadResponse> writeChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            InputStream chunk) throws IOException {
+
+        UploadResponse upload = chunkedUploadService.writeChunk(uploadId, index, chunk);
+
+        log.info("Chunk {} written for upload id:{}", index, uploadId);
+        return ResponseEntity.ok(upload);
+    }
+
+    @Operation(summary = "Get an upload", description = "Get the state of an upload, with the chunks still missing to resume it",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Upload state",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UploadResponse.class))}),
+                    @ApiResponse(responseCode = "404", description = "Upload not found or expired",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters(@Parameter(name = "uploadId", description = "Id of the upload", required = true))
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadResponse> getUpload(@PathVariable String uploadId) {
+        UploadResponse upload = chunkedUploadService.retrieveUpload(uploadId);
+
+        log.info("Upload retrieved with id:{}", uploadId);
+        return ResponseEntity.ok(upload);
+    }
+
+    @Operation(summary = "Commit an upload", description = "Store the assembled picture once every chunk is written",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Upload committed, picture stored",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UploadResponse.class))}),
+                    @ApiResponse(responseCode = "400", description = "Chunks missing or still being written, or not a JPG/PNG image (the upload is then dropped)",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))}),
+                    @ApiResponse(responseCode = "404", description = "Upload not found or expired",
+                            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ProblemDetail.class))})
+            })
+    @Parameters(@Parameter(name = "uploadId", description = "Id of the upload", required = true))
+    @PostMapping("/uploads/{uploadId}/commit")
+    public ResponseEntity<UploadResponse> commitUpload(@PathVariable String uploadId) throws IOException {
+        UploadResponse upload = chunkedUploadService.commitUpload(uploadId);
+
+        log.info("Upload committed with id:{}", uploadId);
+        return ResponseEntity.ok(upload);
+    }
+}
@@ -0,0 +1,14 @@
+package com.chatop.dtos;
+
+import java.time.LocalDateTime;
+
+public record MessageSummaryDTO(
+        Integer id,
+        Integer rental_id,
+        String rental_name,
+        Integer user_id,
+        String user_name,
+        String user_email,
+        String message,
+        LocalDateTime created_at) {
+}
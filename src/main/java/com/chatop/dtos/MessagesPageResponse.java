@@ -0,0 +1,6 @@
+package com.chatop.dtos;
+
+import java.util.List;
+
+public record MessagesPageResponse(List<MessageSummaryDTO> messages, String next) {
+}
@@ -1,6 +1,8 @@
 package com.chatop.dtos;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 public record RentalDTO(
         Integer id,
@@ -8,8 +10,26 @@ public record RentalDTO(
         double surface,
         double price,
         String picture,
+        Map<String, String> picture_variants,
         String description,
+        Double latitude,
+        Double longitude,
         Integer owner_id,
         LocalDateTime created_at,
-        LocalDateTime updated_at) {
+        LocalDateTime updated_at,
+        Long version,
+        List<RentalPictureDTO> gallery) {
+
+    // used by the JPQL constructor projections, the gallery is filled in afterwards for a whole list of rentals
+    public RentalDTO(Integer id, String name, double surface, double price, String picture, Map<String, String> picture_variants,
+                     String description, Double latitude, Double longitude, Integer owner_id, LocalDateTime created_at,
+                     LocalDateTime updated_at, Long version) {
+        this(id, name, surface, price, picture, picture_variants, description, latitude, longitude, owner_id, created_at,
+                updated_at, version, List.of());
+    }
+
+    public RentalDTO withGallery(List<RentalPictureDTO> gallery) {
+        return new RentalDTO(id, name, surface, price, picture, picture_variants, description, latitude, longitude, owner_id,
+                created_at, updated_at, version, gallery);
+    }
 }
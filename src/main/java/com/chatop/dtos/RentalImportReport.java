@@ -0,0 +1,6 @@
+package com.chatop.dtos;
+
+import java.util.List;
+
+public record RentalImportReport(int imported, int failed, List<RentalImportResult> results) {
+}
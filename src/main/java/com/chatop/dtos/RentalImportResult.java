@@ -0,0 +1,7 @@
+package com.chatop.dtos;
+
+public record RentalImportResult(long line, String status, Integer id, String error) {
+
+    public static final String IMPORTED = "IMPORTED";
+    public static final String FAILED = "FAILED";
+}
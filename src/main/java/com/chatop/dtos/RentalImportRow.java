@@ -0,0 +1,11 @@
+package com.chatop.dtos;
+
+public record RentalImportRow(
+        String name,
+        Double surface,
+        Double price,
+        String description,
+        String picture,
+        Double latitude,
+        Double longitude) {
+}
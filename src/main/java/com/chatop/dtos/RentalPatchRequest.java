@@ -0,0 +1,20 @@
+package com.chatop.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RentalPatchRequest {
+    private Long version;
+    private String name;
+    private Double surface;
+    private Double price;
+    private String description;
+    private Double latitude;
+    private Double longitude;
+}
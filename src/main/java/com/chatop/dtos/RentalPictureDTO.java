@@ -0,0 +1,10 @@
+package com.chatop.dtos;
+
+import java.util.Map;
+
+public record RentalPictureDTO(
+        Integer id,
+        int position,
+        String picture,
+        Map<String, String> picture_variants) {
+}
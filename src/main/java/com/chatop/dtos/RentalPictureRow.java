@@ -0,0 +1,18 @@
+package com.chatop.dtos;
+
+import java.util.Map;
+
+/**
+ * Gallery picture projected with the id of its rental, so that the galleries of several rentals are read in one query.
+ */
+public record RentalPictureRow(
+        Integer rentalId,
+        Integer id,
+        int position,
+        String picture,
+        Map<String, String> pictureVariants) {
+
+    public RentalPictureDTO toDTO() {
+        return new RentalPictureDTO(id, position, picture, pictureVariants);
+    }
+}
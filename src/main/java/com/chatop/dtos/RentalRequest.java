@@ -15,5 +15,9 @@ public class RentalRequest  {
     private double surface;
     private double price;
     private MultipartFile picture;
+    // committed chunked upload, used instead of picture
+    private String uploadId;
     private String description;
+    private Double latitude;
+    private Double longitude;
 }
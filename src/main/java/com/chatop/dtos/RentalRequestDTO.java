@@ -11,4 +11,6 @@ public class RentalRequestDTO {
     private double price;
     private String picture;
     private String description;
+    private Double latitude;
+    private Double longitude;
 }
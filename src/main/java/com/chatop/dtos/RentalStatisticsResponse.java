@@ -0,0 +1,18 @@
+package com.chatop.dtos;
+
+import java.util.List;
+import java.util.Map;
+
+public record RentalStatisticsResponse(
+        long count,
+        ValueStatistics price,
+        ValueStatistics surface,
+        Map<String, Double> price_per_m2_percentiles,
+        List<HistogramBucket> price_histogram) {
+
+    public record ValueStatistics(Double min, Double max, Double mean) {
+    }
+
+    public record HistogramBucket(double from, Double to, long count) {
+    }
+}
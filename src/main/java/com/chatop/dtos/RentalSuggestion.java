@@ -0,0 +1,4 @@
+package com.chatop.dtos;
+
+public record RentalSuggestion(Integer id, String name) {
+}
@@ -0,0 +1,6 @@
+package com.chatop.dtos;
+
+import java.util.List;
+
+public record RentalsSearchResponse(List<RentalDTO> rentals, int total) {
+}
@@ -0,0 +1,6 @@
+package com.chatop.dtos;
+
+import java.time.LocalDateTime;
+
+public record RentalsVersion(long count, LocalDateTime lastUpdatedAt) {
+}
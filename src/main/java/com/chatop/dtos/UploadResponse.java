@@ -0,0 +1,16 @@
+package com.chatop.dtos;
+
+import java.util.List;
+
+public record UploadResponse(
+        String upload_id,
+        String status,
+        long size,
+        int chunk_size,
+        int chunks,
+        List<Integer> missing_chunks,
+        String picture) {
+
+    public static final String OPEN = "OPEN";
+    public static final String COMMITTED = "COMMITTED";
+}
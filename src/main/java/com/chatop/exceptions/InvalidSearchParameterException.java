@@ -0,0 +1,11 @@
+package com.chatop.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid search parameter")
+public class InvalidSearchParameterException extends RuntimeException {
+    public InvalidSearchParameterException(String message) {
+        super(message);
+    }
+}
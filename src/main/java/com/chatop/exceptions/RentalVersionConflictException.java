@@ -0,0 +1,11 @@
+package com.chatop.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "Rental modified concurrently")
+public class RentalVersionConflictException extends RuntimeException {
+    public RentalVersionConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.chatop.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Search index not ready")
+public class SearchIndexNotReadyException extends RuntimeException {
+    public SearchIndexNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.chatop.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.TOO_MANY_REQUESTS, reason = "Too many uploads")
+public class TooManyUploadsException extends RuntimeException {
+    public TooManyUploadsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.chatop.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "Upload not found")
+public class UploadNotFoundException extends RuntimeException {
+    public UploadNotFoundException(String message) {
+        super(message);
+    }
+}
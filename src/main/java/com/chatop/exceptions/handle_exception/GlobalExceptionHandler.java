@@ -7,6 +7,7 @@ import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.security.SignatureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -71,6 +72,98 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return errorDetail;
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ProblemDetail handleInvalidCursorException(InvalidCursorException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+        errorDetail.setTitle("Invalid pagination cursor");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Invalid pagination cursor");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(InvalidSearchParameterException.class)
+    public ProblemDetail handleInvalidSearchParameterException(InvalidSearchParameterException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+        errorDetail.setTitle("Invalid search parameter");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Invalid search parameter");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(SearchIndexNotReadyException.class)
+    public ProblemDetail handleSearchIndexNotReadyException(SearchIndexNotReadyException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+        errorDetail.setTitle("Search index not ready");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Search index is still loading, retry later");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(InvalidLocationException.class)
+    public ProblemDetail handleInvalidLocationException(InvalidLocationException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+        errorDetail.setTitle("Invalid location");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Invalid location");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(RentalVersionConflictException.class)
+    public ProblemDetail handleRentalVersionConflictException(RentalVersionConflictException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, ex.getMessage());
+        errorDetail.setTitle("Rental modified concurrently");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Rental modified concurrently");
+        return errorDetail;
+    }
+
+    // a PUT whose rental row changed between its read and its flush, answered like a stale PATCH
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ProblemDetail handleObjectOptimisticLockingFailureException(ObjectOptimisticLockingFailureException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT,
+                "Rental was modified concurrently, reload it and retry");
+        errorDetail.setTitle("Rental modified concurrently");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Rental modified concurrently");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(ImageNotFoundException.class)
+    public ProblemDetail handleImageNotFoundException(ImageNotFoundException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, ex.getMessage());
+        errorDetail.setTitle("Image not found");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Image not found");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(UploadNotFoundException.class)
+    public ProblemDetail handleUploadNotFoundException(UploadNotFoundException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, ex.getMessage());
+        errorDetail.setTitle("Upload not found");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Upload not found");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(InvalidUploadException.class)
+    public ProblemDetail handleInvalidUploadException(InvalidUploadException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+        errorDetail.setTitle("Invalid upload");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Invalid upload");
+        return errorDetail;
+    }
+
+    @ExceptionHandler(TooManyUploadsException.class)
+    public ProblemDetail handleTooManyUploadsException(TooManyUploadsException ex) {
+        ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage());
+        errorDetail.setTitle("Too many uploads");
+        errorDetail.setType(URI.create("https://chatop.com/errors"));
+        errorDetail.setProperty("error", "Too many uploads");
+        return errorDetail;
+    }
+
     @ExceptionHandler(Exception.class)
     public ProblemDetail handleSecurityException(Exception ex) {
         ProblemDetail errorDetail = null;
@@ -13,7 +13,10 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "MESSAGES")
+@Table(name = "MESSAGES", indexes = {
+        @Index(name = "idx_messages_rental_created_at_id", columnList = "rental_id, created_at DESC, id DESC"),
+        @Index(name = "idx_messages_owner_rental_created_at_id", columnList = "owner_id, rental_id, created_at DESC, id DESC")
+})
 public class Message {
 
     @Id
@@ -29,6 +32,10 @@ public class Message {
     @JoinColumn(name = "rental_id")
     private Rental rental;
 
+    // owner of the rental, copied at insert so that an owner's inbox is one range of an index on MESSAGES
+    @Column(name = "owner_id")
+    private Integer ownerId;
+
     @Column(name = "message", length = 2000)
     @Size(max = 2000)
     private String message;
@@ -0,0 +1,47 @@
+package com.chatop.models;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores the picture variants as {@code 320w=url;640w=url}, in the order of the map.
+ */
+@Converter
+public class PictureVariantsConverter implements AttributeConverter<Map<String, String>, String> {
+
+    private static final String ENTRY_SEPARATOR = ";";
+    private static final String KEY_SEPARATOR = "=";
+
+    @Override
+    public String convertToDatabaseColumn(Map<String, String> variants) {
+        if (variants == null || variants.isEmpty()) {
+            return null;
+        }
+        StringBuilder column = new StringBuilder();
+        variants.forEach((key, url) -> {
+            if (!column.isEmpty()) {
+                column.append(ENTRY_SEPARATOR);
+            }
+            column.append(key).append(KEY_SEPARATOR).append(url);
+        });
+        return column.toString();
+    }
+
+    @Override
+    public Map<String, String> convertToEntityAttribute(String column) {
+        if (column == null || column.isEmpty()) {
+            return null;
+        }
+        Map<String, String> variants = new LinkedHashMap<>();
+        for (String entry : column.split(ENTRY_SEPARATOR)) {
+            int separator = entry.indexOf(KEY_SEPARATOR);
+            if (separator > 0) {
+                variants.put(entry.substring(0, separator), entry.substring(separator + 1));
+            }
+        }
+        return variants;
+    }
+}
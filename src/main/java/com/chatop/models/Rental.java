@@ -2,20 +2,32 @@ package com.chatop.models;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 
 @Entity
-@Table(name = "RENTALS")
+@Table(name = "RENTALS", indexes = {
+        @Index(name = "idx_rentals_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_rentals_owner_created_at_id", columnList = "owner_id, created_at, id"),
+        @Index(name = "idx_rentals_picture", columnList = "picture")
+})
+// only the changed columns are written: a PUT keeps the picture variants recorded since it read the rental
+@DynamicUpdate
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Rental {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled table generator instead of IDENTITY so that Hibernate can batch the inserts
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "rental_id_generator")
+    @TableGenerator(name = "rental_id_generator", table = "ID_GENERATORS", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "RENTALS", allocationSize = 50)
     @Column(name = "id")
     private Integer id;
 
@@ -31,10 +43,21 @@ public class Rental {
     @Column(name = "picture")
     private String picture;
 
+    // resized copies of the picture keyed by width ("320w"), filled in once the variants have been generated
+    @Convert(converter = PictureVariantsConverter.class)
+    @Column(name = "picture_variants", length = 1000)
+    private Map<String, String> pictureVariants;
+
     @Column(name = "description", length = 2000)
     private String description;
 
-    @ManyToOne
+    @Column(name = "latitude")
+    private Double latitude;
+
+    @Column(name = "longitude")
+    private Double longitude;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(nullable = false, name = "owner_id")
     private User owner;
 
@@ -46,4 +69,8 @@ public class Rental {
     @DateTimeFormat(pattern = "yyyy/MM/dd")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
 }
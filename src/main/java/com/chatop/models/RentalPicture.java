@@ -0,0 +1,46 @@
+package com.chatop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+
+@Entity
+@Table(name = "RENTAL_PICTURES", indexes = {
+        @Index(name = "idx_rental_pictures_rental_position", columnList = "rental_id, position"),
+        @Index(name = "idx_rental_pictures_picture", columnList = "picture")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RentalPicture {
+
+    // pooled table generator, the pictures of one request are inserted as a single JDBC batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "rental_picture_id_generator")
+    @TableGenerator(name = "rental_picture_id_generator", table = "ID_GENERATORS", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "RENTAL_PICTURES", allocationSize = 50)
+    @Column(name = "id")
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(nullable = false, name = "rental_id")
+    private Rental rental;
+
+    @Column(name = "position", nullable = false)
+    private int position;
+
+    @Column(name = "picture", nullable = false)
+    private String picture;
+
+    @Convert(converter = PictureVariantsConverter.class)
+    @Column(name = "picture_variants", length = 1000)
+    private Map<String, String> pictureVariants;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+}
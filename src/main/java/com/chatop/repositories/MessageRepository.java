@@ -1,7 +1,48 @@
 package com.chatop.repositories;
 
+import com.chatop.dtos.MessageSummaryDTO;
 import com.chatop.models.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Integer> {
+
+    // only the displayed columns of the sender and the rental are read, neither entity is loaded
+    String MESSAGE_SUMMARY_SELECT = """
+            select new com.chatop.dtos.MessageSummaryDTO(
+                m.id, r.id, r.name, u.id, u.name, u.email, m.message, m.createdAt)
+            from Message m join m.rental r join m.user u
+            """;
+
+    // the filters and the order are on the columns of MESSAGES (m.rental.id is its rental_id), so that the rows are
+    // read in index order and only the page is joined to RENTALS and USERS
+
+    // pages of a rental, newest first, over idx_messages_rental_created_at_id
+    @Query(MESSAGE_SUMMARY_SELECT + "where m.rental.id = :rentalId order by m.createdAt desc, m.id desc")
+    List<MessageSummaryDTO> findRentalFirstPage(@Param("rentalId") Integer rentalId, Pageable pageable);
+
+    @Query(MESSAGE_SUMMARY_SELECT + """
+            where m.rental.id = :rentalId
+            and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id))
+            order by m.createdAt desc, m.id desc""")
+    List<MessageSummaryDTO> findRentalPageAfter(@Param("rentalId") Integer rentalId, @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Integer id, Pageable pageable);
+
+    // inbox of an owner: rental by rental, newest first within a rental, over idx_messages_owner_rental_created_at_id
+    @Query(MESSAGE_SUMMARY_SELECT + "where m.ownerId = :ownerId order by m.rental.id, m.createdAt desc, m.id desc")
+    List<MessageSummaryDTO> findInboxFirstPage(@Param("ownerId") Integer ownerId, Pageable pageable);
+
+    @Query(MESSAGE_SUMMARY_SELECT + """
+            where m.ownerId = :ownerId
+            and (m.rental.id > :rentalId or (m.rental.id = :rentalId
+                and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id))))
+            order by m.rental.id, m.createdAt desc, m.id desc""")
+    List<MessageSummaryDTO> findInboxPageAfter(@Param("ownerId") Integer ownerId, @Param("rentalId") Integer rentalId,
+                                               @Param("createdAt") LocalDateTime createdAt, @Param("id") Integer id,
+                                               Pageable pageable);
 }
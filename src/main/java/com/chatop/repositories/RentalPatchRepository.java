@@ -0,0 +1,15 @@
+package com.chatop.repositories;
+
+import com.chatop.dtos.RentalPatchRequest;
+
+import java.time.LocalDateTime;
+
+public interface RentalPatchRepository {
+
+    /**
+     * Writes the non null fields of the patch with a single UPDATE, guarded by the expected version.
+     *
+     * @return the number of updated rows, 0 when the rental does not exist or its version has changed
+     */
+    int patchRental(Integer id, Long expectedVersion, RentalPatchRequest patch, LocalDateTime updatedAt);
+}
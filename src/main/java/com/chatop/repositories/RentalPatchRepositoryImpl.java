@@ -0,0 +1,48 @@
+package com.chatop.repositories;
+
+import com.chatop.dtos.RentalPatchRequest;
+import com.chatop.models.Rental;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDateTime;
+
+public class RentalPatchRepositoryImpl implements RentalPatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int patchRental(Integer id, Long expectedVersion, RentalPatchRequest patch, LocalDateTime updatedAt) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Rental> update = criteriaBuilder.createCriteriaUpdate(Rental.class);
+        Root<Rental> rental = update.from(Rental.class);
+
+        setIfPresent(update, "name", patch.getName());
+        setIfPresent(update, "surface", patch.getSurface());
+        setIfPresent(update, "price", patch.getPrice());
+        setIfPresent(update, "description", patch.getDescription());
+        setIfPresent(update, "latitude", patch.getLatitude());
+        setIfPresent(update, "longitude", patch.getLongitude());
+        update.set("updatedAt", updatedAt);
+
+        // bulk updates bypass the @Version handling, the version is checked and bumped by hand
+        Path<Long> version = rental.get("version");
+        update.set(version, criteriaBuilder.sum(version, 1L));
+        update.where(
+                criteriaBuilder.equal(rental.get("id"), id),
+                criteriaBuilder.equal(version, expectedVersion));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    private static void setIfPresent(CriteriaUpdate<Rental> update, String attribute, Object value) {
+        if (value != null) {
+            update.set(attribute, value);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.chatop.repositories;
+
+import com.chatop.dtos.RentalPictureRow;
+import com.chatop.models.RentalPicture;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public interface RentalPictureRepository extends JpaRepository<RentalPicture, Integer> {
+
+    @Query("""
+            select new com.chatop.dtos.RentalPictureRow(p.rental.id, p.id, p.position, p.picture, p.pictureVariants)
+            from RentalPicture p
+            where p.rental.id in :rentalIds
+            order by p.rental.id, p.position""")
+    List<RentalPictureRow> findRowsByRentalIdIn(@Param("rentalIds") Collection<Integer> rentalIds);
+
+    @Query("select coalesce(max(p.position), -1) from RentalPicture p where p.rental.id = :rentalId")
+    int findMaxPosition(@Param("rentalId") Integer rentalId);
+
+    @Query("select distinct p.rental.id from RentalPicture p where p.picture = :picture")
+    List<Integer> findRentalIdsByPicture(@Param("picture") String picture);
+
+    boolean existsByPictureContaining(String fileName);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = RentalRepository.STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p.picture from RentalPicture p")
+    Stream<String> streamPictures();
+
+    @Modifying
+    @Query("update RentalPicture p set p.pictureVariants = :variants where p.picture = :picture")
+    int updatePictureVariants(@Param("picture") String picture, @Param("variants") Map<String, String> variants);
+}
@@ -1,7 +1,105 @@
 package com.chatop.repositories;
 
+import com.chatop.dtos.RentalDTO;
+import com.chatop.dtos.RentalsVersion;
 import com.chatop.models.Rental;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface RentalRepository extends JpaRepository<Rental, Integer> {
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface RentalRepository extends JpaRepository<Rental, Integer>, RentalPatchRepository {
+
+    String STREAM_FETCH_SIZE = "500";
+
+    // reads the owner_id foreign key directly, the owner row is never joined nor loaded
+    String RENTAL_DTO_SELECT = """
+            select new com.chatop.dtos.RentalDTO(
+                r.id, r.name, r.surface, r.price, r.picture, r.pictureVariants, r.description, r.latitude, r.longitude,
+                r.owner.id, r.createdAt, r.updatedAt, r.version)
+            from Rental r
+            """;
+
+    @Query(RENTAL_DTO_SELECT + "order by r.id")
+    List<RentalDTO> findAllRentalDTOs();
+
+    @Query(RENTAL_DTO_SELECT + "where r.id = :id")
+    Optional<RentalDTO> findRentalDTOById(@Param("id") Integer id);
+
+    @Query(RENTAL_DTO_SELECT + "where r.id in :ids")
+    List<RentalDTO> findRentalDTOsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select r.owner.id from Rental r where r.id = :id")
+    Optional<Integer> findOwnerIdById(@Param("id") Integer id);
+
+    @Query("select new com.chatop.dtos.RentalsVersion(count(r), max(r.updatedAt)) from Rental r")
+    RentalsVersion findRentalsVersion();
+
+    @Query(RENTAL_DTO_SELECT + "order by r.createdAt desc, r.id desc")
+    List<RentalDTO> findFirstPage(Pageable pageable);
+
+    @Query(RENTAL_DTO_SELECT + """
+            where r.createdAt < :createdAt or (r.createdAt = :createdAt and r.id < :id)
+            order by r.createdAt desc, r.id desc""")
+    List<RentalDTO> findPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Integer id, Pageable pageable);
+
+    @Query(RENTAL_DTO_SELECT + "where r.owner.id = :ownerId order by r.createdAt desc, r.id desc")
+    List<RentalDTO> findOwnerFirstPage(@Param("ownerId") Integer ownerId, Pageable pageable);
+
+    @Query(RENTAL_DTO_SELECT + """
+            where r.owner.id = :ownerId
+            and (r.createdAt < :createdAt or (r.createdAt = :createdAt and r.id < :id))
+            order by r.createdAt desc, r.id desc""")
+    List<RentalDTO> findOwnerPageAfter(@Param("ownerId") Integer ownerId, @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") Integer id, Pageable pageable);
+
+    @Query("select r.id from Rental r where r.picture = :picture")
+    List<Integer> findIdsByPicture(@Param("picture") String picture);
+
+    // a digest or file name anywhere in the picture URL, whatever its host; the leading wildcard is not served by
+    // idx_rentals_picture, only orphan candidates and replaced pictures are checked this way
+    boolean existsByPictureContaining(String fileName);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select r.picture from Rental r where r.picture is not null")
+    Stream<String> streamPictures();
+
+    // variants are derived from the picture, not an edit: the version a client sends back with its PATCH is kept, only
+    // updated_at (the ETag and Last-Modified) moves. A PUT only writes the columns it changed (@DynamicUpdate), so one
+    // that read the rental before keeps these variants
+    @Modifying
+    @Query("update Rental r set r.pictureVariants = :variants, r.updatedAt = :updatedAt where r.picture = :picture")
+    int updatePictureVariants(@Param("picture") String picture, @Param("variants") Map<String, String> variants,
+                              @Param("updatedAt") LocalDateTime updatedAt);
+
+    // the variants of a gallery picture changed: new updated_at (ETag), same version
+    @Modifying
+    @Query("update Rental r set r.updatedAt = :updatedAt where r.id in :ids")
+    int refreshUpdatedAt(@Param("ids") Collection<Integer> ids, @Param("updatedAt") LocalDateTime updatedAt);
+
+    // a change of the gallery is a change of the rental: new updated_at (ETag) and version, row locked until commit
+    @Modifying
+    @Query("update Rental r set r.updatedAt = :updatedAt, r.version = r.version + 1 where r.id in :ids")
+    int touchRentals(@Param("ids") Collection<Integer> ids, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(RENTAL_DTO_SELECT + "order by r.id")
+    Stream<RentalDTO> streamAllRentalDTOs();
 }
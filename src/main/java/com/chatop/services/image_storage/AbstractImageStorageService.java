@@ -0,0 +1,220 @@
+package com.chatop.services.image_storage;
+
+import com.chatop.exceptions.ImageNotFoundException;
+import com.chatop.exceptions.InvalidImageFormatException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Content-addressed image store: an upload is stored once under the SHA-256 digest of its bytes, so identical
+ * images share one entry and a stored picture never changes. The upload is hashed while it is spooled to a file of
+ * the store, a duplicate is then not stored again, only its date is refreshed. Subclasses only decide where the
+ * bytes go.
+ */
+@Slf4j
+public abstract class AbstractImageStorageService implements ImageStorageService {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int NAME_LOCKS = 64;
+
+    protected final ApplicationEventPublisher eventPublisher;
+    private final Object[] nameLocks = new Object[NAME_LOCKS];
+
+    protected AbstractImageStorageService(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        for (int i = 0; i < nameLocks.length; i++) {
+            nameLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String savePicture(MultipartFile image) throws IOException {
+        String contentType = image.getContentType();
+
+        if (contentType == null ) {
+            log.error("The content type of the image is unknown.");
+            throw new InvalidImageFormatException("The content type of the image is unknown.");
+        }
+        if (!(contentType.equals("image/jpeg") || contentType.equals("image/png") || contentType.equals("image/jpg"))) {
+            log.error("Only images in JPG, PNG or JPEG format are accepted.");
+            throw new InvalidImageFormatException("Only images in JPG, PNG or JPEG format are accepted.");
+        }
+
+        // read once: hashed while it is spooled next to the store, only the store step runs under the name lock
+        Path spooled = createSpoolFile();
+        try {
+            String fileName;
+            try (InputStream upload = image.getInputStream();
+                 OutputStream spool = Files.newOutputStream(spooled)) {
+                fileName = contentAddress(upload, spool);
+            }
+            return store(fileName, spooled);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    @Override
+    public String savePicture(Path file) throws IOException {
+        String fileName;
+        try (InputStream upload = Files.newInputStream(file)) {
+            fileName = contentAddress(upload, OutputStream.nullOutputStream());
+        }
+        return store(fileName, file);
+    }
+
+    private String store(String fileName, Path file) throws IOException {
+        synchronized (lockFor(fileName)) {
+            // a duplicate refreshes the date of the stored file, the orphan collector's grace period starts over
+            if (!refresh(fileName)) {
+                try {
+                    storeUpload(fileName, file);
+                } catch (IOException e) {
+                    log.error("Error while saving rental image");
+                    throw e;
+                }
+            }
+        }
+        return stored(fileName);
+    }
+
+    @Override
+    public boolean releasePicture(String fileName, long notModifiedSince, BooleanSupplier unreferenced) throws IOException {
+        if (!deleteFileIfStale(fileName, notModifiedSince, unreferenced)) {
+            return false;
+        }
+        eventPublisher.publishEvent(new PictureDeletedEvent(fileName));
+        log.info("Rental Image {} deleted", fileName);
+        return true;
+    }
+
+    @Override
+    public boolean touch(String fileName) throws IOException {
+        checkFileName(fileName);
+        synchronized (lockFor(fileName)) {
+            return refresh(fileName);
+        }
+    }
+
+    @Override
+    public boolean deleteFileIfStale(String fileName, long notModifiedSince, BooleanSupplier unreferenced) throws IOException {
+        checkFileName(fileName);
+        synchronized (lockFor(fileName)) {
+            StoredImage image;
+            try {
+                image = locate(fileName);
+            } catch (ImageNotFoundException e) {
+                return false;
+            }
+            if (image.lastModified() > notModifiedSince || !unreferenced.getAsBoolean()) {
+                return false;
+            }
+            deleteFile(fileName);
+            return true;
+        }
+    }
+
+    /**
+     * Creates the empty file a multipart upload is spooled to, on the file system of the store so that
+     * {@link #storeUpload} can move it.
+     */
+    protected abstract Path createSpoolFile() throws IOException;
+
+    /**
+     * Stores an upload already spooled to a file, the file may be moved rather than copied.
+     */
+    protected abstract void storeUpload(String fileName, Path file) throws IOException;
+
+    /**
+     * Sets the date of a stored file to now.
+     *
+     * @return {@code false} when nothing is stored under the name
+     */
+    protected abstract boolean refresh(String fileName) throws IOException;
+
+    /**
+     * Stores, refreshes and conditional deletions of one name are serialized on this lock; a subclass takes it in
+     * {@code storeFile} as well.
+     */
+    protected final Object lockFor(String fileName) {
+        return nameLocks[Math.floorMod(fileName.hashCode(), nameLocks.length)];
+    }
+
+    private String stored(String fileName) {
+        log.info("Rental Image stored as {}", fileName);
+        eventPublisher.publishEvent(new PictureStoredEvent(fileName));
+        return fileName;
+    }
+
+    /**
+     * Stored names are plain file names, anything that could point outside of the store is treated as missing.
+     */
+    protected static String checkFileName(String fileName) {
+        if (fileName == null || fileName.isEmpty() || fileName.startsWith(".") ||
+                fileName.indexOf('/') >= 0 || fileName.indexOf('\\') >= 0) {
+            throw new ImageNotFoundException("Image not found: %s".formatted(fileName));
+        }
+        return fileName;
+    }
+
+    /**
+     * Reads the upload once, checking its first bytes against the PNG and JPEG signatures, hashing the whole content
+     * and copying it to {@code copy}.
+     *
+     * @return {@code <sha-256 hex>.png} or {@code <sha-256 hex>.jpg}
+     */
+    private static String contentAddress(InputStream upload, OutputStream copy) throws IOException {
+        MessageDigest digest = sha256();
+        DigestInputStream inputStream = new DigestInputStream(upload, digest);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read = inputStream.readNBytes(buffer, 0, PNG_SIGNATURE.length);
+        String extension;
+        if (startsWith(buffer, read, PNG_SIGNATURE)) {
+            extension = "png";
+        } else if (startsWith(buffer, read, JPEG_SIGNATURE)) {
+            extension = "jpg";
+        } else {
+            log.error("The image content is neither a PNG nor a JPEG.");
+            throw new InvalidImageFormatException("Only images in JPG, PNG or JPEG format are accepted.");
+        }
+        do {
+            copy.write(buffer, 0, read);
+        } while ((read = inputStream.read(buffer)) != -1);
+        return HexFormat.of().formatHex(digest.digest()) + "." + extension;
+    }
+
+    protected static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
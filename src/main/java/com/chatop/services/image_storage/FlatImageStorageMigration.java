@@ -0,0 +1,45 @@
+package com.chatop.services.image_storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * One-off migration of the flat layout into the packed store, enabled with {@code image-storage.migrate-flat=true}
+ * alongside {@code image-storage.backend=packed}. Files keep their names, so the picture URLs stored on the rentals
+ * stay valid. Already imported files are skipped, an interrupted migration can simply be restarted.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "image-storage.migrate-flat", havingValue = "true")
+public class FlatImageStorageMigration {
+
+    private final ImageStorageService imageStorageService;
+
+    @Value("${image-storage-path}")
+    private String imageStoragePath;
+
+    @Value("${image-storage.migrate-flat-delete-sources:false}")
+    private boolean deleteSources;
+
+    public FlatImageStorageMigration(ImageStorageService imageStorageService) {
+        this.imageStorageService = imageStorageService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() throws IOException {
+        if (!(imageStorageService instanceof PackedImageStorageService packedImageStorageService)) {
+            log.error("Flat image migration requested but image-storage.backend is not packed, nothing migrated");
+            return;
+        }
+        log.info("Migrating the flat image directory {} into the packed store", imageStoragePath);
+        int imported = packedImageStorageService.importFlatFiles(Paths.get(imageStoragePath), deleteSources);
+        log.info("Flat image migration done, {} images imported", imported);
+    }
+}
@@ -0,0 +1,167 @@
+package com.chatop.services.image_storage;
+
+import com.chatop.exceptions.ImageNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the most recently served images open, with their size and ETag, so a request does not pay for an
+ * open and a stat. An evicted handle is closed once the last request using it has released it.
+ */
+@Component
+@Slf4j
+public class ImageFileCache {
+
+    // <sha-256>.<ext> and its variants <sha-256>-<width>w.jpg, whose content never changes
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}(-\\d+w)?\\.(png|jpg)");
+
+    private final ImageStorageService imageStorageService;
+    private final Cache<String, OpenImage> openImages;
+
+    public ImageFileCache(ImageStorageService imageStorageService, @Value("${image-serving.open-files:256}") int openFiles) {
+        this.imageStorageService = imageStorageService;
+        this.openImages = Caffeine.newBuilder()
+                .maximumSize(openFiles)
+                .expireAfterAccess(Duration.ofMinutes(5))
+                .<String, OpenImage>removalListener((fileName, image, cause) -> {
+                    if (image != null) {
+                        image.release();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return an open image the caller must {@link OpenImage#release() release}
+     */
+    public OpenImage acquire(String fileName) {
+        if (fileName.startsWith(".") || !fileName.equals(Paths.get(fileName).getFileName().toString())) {
+            throw new ImageNotFoundException("Image not found: %s".formatted(fileName));
+        }
+        while (true) {
+            OpenImage image = openImages.get(fileName, this::open);
+            if (image.retain()) {
+                return image;
+            }
+            // evicted and closed between the lookup and the retain
+            openImages.asMap().remove(fileName, image);
+        }
+    }
+
+    @EventListener
+    public void onImageFileChanged(ImageFileChangedEvent event) {
+        openImages.invalidate(event.fileName());
+    }
+
+    private OpenImage open(String fileName) {
+        try {
+            StoredImage stored = imageStorageService.locate(fileName);
+            FileChannel channel = FileChannel.open(stored.file(), StandardOpenOption.READ);
+            boolean immutable = CONTENT_ADDRESSED.matcher(fileName).matches();
+            String etag = immutable
+                    ? "\"" + fileName.substring(0, fileName.lastIndexOf('.')) + "\""
+                    : "\"" + Long.toHexString(stored.length()) + "-" + Long.toHexString(stored.lastModified()) + "\"";
+            String contentType = fileName.endsWith(".png") ? "image/png" : "image/jpeg";
+            return new OpenImage(stored.file(), channel, stored.offset(), stored.length(), stored.lastModified(), etag, contentType, immutable);
+        } catch (NoSuchFileException e) {
+            throw new ImageNotFoundException("Image not found: %s".formatted(fileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static final class OpenImage {
+        private final Path path;
+        private final FileChannel channel;
+        private final long offset;
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+        private final String contentType;
+        private final boolean immutable;
+        // one reference held by the cache, one per request being served
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private OpenImage(Path path, FileChannel channel, long offset, long size, long lastModified, String etag, String contentType, boolean immutable) {
+            this.path = path;
+            this.channel = channel;
+            this.offset = offset;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.contentType = contentType;
+            this.immutable = immutable;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        /**
+         * Position of the image in {@link #path()}, non zero when the file packs several images.
+         */
+        public long offset() {
+            return offset;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public long lastModified() {
+            return lastModified;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public boolean immutable() {
+            return immutable;
+        }
+
+        private boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Error while closing {}", path, e);
+                }
+            }
+        }
+    }
+}
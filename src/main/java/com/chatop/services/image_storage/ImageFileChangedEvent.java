@@ -0,0 +1,7 @@
+package com.chatop.services.image_storage;
+
+/**
+ * Published when a stored file is replaced, moved or deleted, so that open handles on it are dropped.
+ */
+public record ImageFileChangedEvent(String fileName) {
+}
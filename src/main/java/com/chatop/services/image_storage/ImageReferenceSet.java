@@ -0,0 +1,70 @@
+package com.chatop.services.image_storage;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Set of referenced content addresses kept as the first 64 bits of their SHA-256, 8 bytes per picture in a sorted
+ * array. A variant ({@code <digest>-320w.jpg}) shares the key of its picture. Two digests sharing their first
+ * 64 bits only keep an orphan alive, a referenced picture is never reported as missing.
+ */
+final class ImageReferenceSet {
+
+    private static final Pattern CONTENT_ADDRESS = Pattern.compile("([0-9a-f]{64})(-\\d+w)?\\.(png|jpg)");
+
+    private long[] keys = new long[1024];
+    private int size;
+    private boolean sealed;
+
+    /**
+     * @return the SHA-256 digest of a picture or variant file name, {@code null} for a name that is not a content address
+     */
+    static String digest(String fileName) {
+        Matcher matcher = CONTENT_ADDRESS.matcher(fileName);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Adds the picture of a URL or file name, anything that is not a content address is ignored.
+     */
+    void add(String picture) {
+        if (sealed) {
+            throw new IllegalStateException("Reference set already sealed");
+        }
+        String digest = digest(picture.substring(picture.lastIndexOf('/') + 1));
+        if (digest == null) {
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size++] = key(digest);
+    }
+
+    ImageReferenceSet seal() {
+        Arrays.sort(keys, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || keys[distinct - 1] != keys[i]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        keys = Arrays.copyOf(keys, distinct);
+        size = distinct;
+        sealed = true;
+        return this;
+    }
+
+    boolean contains(String digest) {
+        return Arrays.binarySearch(keys, 0, size, key(digest)) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static long key(String digest) {
+        return Long.parseUnsignedLong(digest, 0, 16, 16);
+    }
+}
@@ -3,8 +3,66 @@ package com.chatop.services.image_storage;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
 
 public interface ImageStorageService {
 
+    /**
+     * Stores the image under the SHA-256 digest of its content, an image already stored is not written again.
+     *
+     * @return the file name of the stored image, {@code <digest>.<extension>}
+     */
     String savePicture(MultipartFile image) throws IOException;
+
+    /**
+     * Same as {@link #savePicture(MultipartFile)} for an upload assembled in a file, which may be moved into the store.
+     */
+    String savePicture(Path file) throws IOException;
+
+    /**
+     * Removes a stored picture and its variants when, under the store lock of the name, the picture is not dated after
+     * {@code notModifiedSince} and {@code unreferenced} still holds.
+     *
+     * @return whether the picture was deleted
+     */
+    boolean releasePicture(String fileName, long notModifiedSince, BooleanSupplier unreferenced) throws IOException;
+
+    /**
+     * Stores a file produced by the application (a picture variant) under the given name, replacing any previous one.
+     */
+    void storeFile(String fileName, Path source) throws IOException;
+
+    void deleteFile(String fileName) throws IOException;
+
+    boolean exists(String fileName);
+
+    /**
+     * Sets the date of a stored file to now, so that {@link #deleteFileIfStale} keeps it for another grace period.
+     *
+     * @return {@code false} when nothing is stored under the name
+     */
+    boolean touch(String fileName) throws IOException;
+
+    /**
+     * Deletes the file when its date is not after {@code notModifiedSince} and {@code unreferenced} still holds,
+     * atomically with respect to the stores and touches of the same name.
+     *
+     * @return whether the file was deleted
+     */
+    boolean deleteFileIfStale(String fileName, long notModifiedSince, BooleanSupplier unreferenced) throws IOException;
+
+    /**
+     * @throws com.chatop.exceptions.ImageNotFoundException when nothing is stored under the name
+     */
+    StoredImage locate(String fileName) throws IOException;
+
+    InputStream openStream(String fileName) throws IOException;
+
+    /**
+     * Visits every stored file, pictures and variants. Names starting with a dot (uploads in progress, temp files,
+     * markers) are internal and never visited. Files stored or deleted during the walk may or may not be visited.
+     */
+    void walkFiles(StoredFileVisitor visitor) throws IOException;
 }
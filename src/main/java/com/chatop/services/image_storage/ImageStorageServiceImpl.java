@@ -1,45 +1,248 @@
 package com.chatop.services.image_storage;
 
-import com.chatop.exceptions.InvalidImageFormatException;
-import lombok.extern.slf4j.Slf4j;
+import com.chatop.exceptions.ImageNotFoundException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HexFormat;
 
+/**
+ * One file per image under {@code image-storage-path}. A new file is written to a temp file in that directory and
+ * atomically moved into place, so a reader never sees a partially written image.
+ * <p>
+ * With {@code image-storage.flat.layout=sharded} the files go to {@code ab/cd/<name>}, {@code abcd} being the start
+ * of the SHA-256 of the name, so no directory holds more than a few hundred files. Until {@link ShardedLayoutMigrator}
+ * has moved the files of the flat layout, lookups fall back to the root directory.
+ */
 @Service
-@Slf4j
-@Transactional
-public class ImageStorageServiceImpl implements ImageStorageService {
+@ConditionalOnProperty(name = "image-storage.backend", havingValue = "flat", matchIfMissing = true)
+public class ImageStorageServiceImpl extends AbstractImageStorageService {
 
-    @Value("${image-storage-path}")
-    private String imageStoragePath;
+    static final String MIGRATED_MARKER = ".sharded-layout-migrated";
+
+    private final Path imageStorageDirectory;
+    private final boolean sharded;
+    private volatile boolean flatFallback;
+
+    public ImageStorageServiceImpl(ApplicationEventPublisher eventPublisher, @Value("${image-storage-path}") String imageStoragePath,
+                                   @Value("${image-storage.flat.layout:flat}") String layout) {
+        super(eventPublisher);
+        this.imageStorageDirectory = Paths.get(imageStoragePath);
+        this.sharded = "sharded".equals(layout);
+        this.flatFallback = sharded && !Files.exists(imageStorageDirectory.resolve(MIGRATED_MARKER));
+    }
 
     @Override
-    public String savePicture(MultipartFile image) throws IOException {
-        String contentType = image.getContentType();
+    protected Path createSpoolFile() throws IOException {
+        return Files.createTempFile(imageStorageDirectory, ".upload-", ".tmp");
+    }
 
-        if (contentType == null ) {
-            log.error("The content type of the image is unknown.");
-            throw new InvalidImageFormatException("The content type of the image is unknown.");
+    @Override
+    protected void storeUpload(String fileName, Path file) throws IOException {
+        moveIntoPlace(file, target(fileName));
+    }
+
+    @Override
+    public void storeFile(String fileName, Path source) throws IOException {
+        Path temporary = Files.createTempFile(imageStorageDirectory, ".store-", ".tmp");
+        try {
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (lockFor(checkFileName(fileName))) {
+                moveIntoPlace(temporary, target(fileName));
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
         }
-        if (!(contentType.equals("image/jpeg") || contentType.equals("image/png") || contentType.equals("image/jpg"))) {
-            log.error("Only images in JPG, PNG or JPEG format are accepted.");
-            throw new InvalidImageFormatException("Only images in JPG, PNG or JPEG format are accepted.");
+        eventPublisher.publishEvent(new ImageFileChangedEvent(fileName));
+    }
+
+    @Override
+    protected boolean refresh(String fileName) throws IOException {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        Path file = find(fileName);
+        if (file == null) {
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(file, now);
+        } catch (NoSuchFileException e) {
+            // moved by the migrator between the lookup and the update
+            file = find(fileName);
+            if (file == null) {
+                return false;
+            }
+            Files.setLastModifiedTime(file, now);
         }
+        return true;
+    }
+
+    @Override
+    public void deleteFile(String fileName) throws IOException {
+        Files.deleteIfExists(target(checkFileName(fileName)));
+        if (sharded) {
+            Files.deleteIfExists(imageStorageDirectory.resolve(fileName));
+        }
+        eventPublisher.publishEvent(new ImageFileChangedEvent(fileName));
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return find(checkFileName(fileName)) != null;
+    }
+
+    @Override
+    public StoredImage locate(String fileName) throws IOException {
+        checkFileName(fileName);
+        try {
+            return locate(fileName, find(fileName));
+        } catch (NoSuchFileException e) {
+            // moved by the migrator between the lookup and the read
+            return locate(fileName, find(fileName));
+        }
+    }
+
+    @Override
+    public InputStream openStream(String fileName) throws IOException {
+        checkFileName(fileName);
+        try {
+            return open(fileName, find(fileName));
+        } catch (NoSuchFileException e) {
+            return open(fileName, find(fileName));
+        }
+    }
+
+    @Override
+    public void walkFiles(StoredFileVisitor visitor) throws IOException {
+        Files.walkFileTree(imageStorageDirectory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                return directory.equals(imageStorageDirectory) || !isInternal(directory)
+                        ? FileVisitResult.CONTINUE
+                        : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (attributes.isRegularFile() && !isInternal(file)) {
+                    visitor.visit(file.getFileName().toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // deleted or moved to its shard since the directory was listed
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    boolean isSharded() {
+        return sharded;
+    }
+
+    Path root() {
+        return imageStorageDirectory;
+    }
+
+    Path shardedPath(String fileName) {
+        String hash = HexFormat.of().formatHex(sha256().digest(fileName.getBytes(StandardCharsets.UTF_8)));
+        return imageStorageDirectory.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(fileName);
+    }
+
+    /**
+     * Moves a file of the flat layout to its shard, a file already present in the shard wins.
+     */
+    void moveToShard(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        Path target = shardedPath(fileName);
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        eventPublisher.publishEvent(new ImageFileChangedEvent(fileName));
+    }
+
+    void markMigrated() throws IOException {
+        Files.write(imageStorageDirectory.resolve(MIGRATED_MARKER), new byte[0]);
+        flatFallback = false;
+    }
+
+    private Path target(String fileName) throws IOException {
+        if (!sharded) {
+            return imageStorageDirectory.resolve(fileName);
+        }
+        Path target = shardedPath(fileName);
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+
+    /**
+     * @return the file holding the image, {@code null} when there is none
+     */
+    private Path find(String fileName) {
+        if (!sharded) {
+            Path file = imageStorageDirectory.resolve(fileName);
+            return Files.isRegularFile(file) ? file : null;
+        }
+        Path file = shardedPath(fileName);
+        if (Files.isRegularFile(file)) {
+            return file;
+        }
+        if (flatFallback) {
+            Path flatFile = imageStorageDirectory.resolve(fileName);
+            if (Files.isRegularFile(flatFile)) {
+                return flatFile;
+            }
+            // the migrator may have moved it between both checks
+            if (Files.isRegularFile(file)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private static StoredImage locate(String fileName, Path file) throws IOException {
+        if (file == null) {
+            throw new ImageNotFoundException("Image not found: %s".formatted(fileName));
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new StoredImage(file, 0, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private static boolean isInternal(Path path) {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    private static InputStream open(String fileName, Path file) throws IOException {
+        if (file == null) {
+            throw new ImageNotFoundException("Image not found: %s".formatted(fileName));
+        }
+        return Files.newInputStream(file);
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
         try {
-            Path path = Paths.get(imageStoragePath, image.getOriginalFilename());
-            Files.write(path, image.getBytes());
-            log.info("Rental Image saved successfully");
-            return image.getOriginalFilename();
-        } catch (IOException e) {
-            log.error("Error while saving rental image");
-            throw e;
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 }
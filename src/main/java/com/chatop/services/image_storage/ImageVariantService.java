@@ -0,0 +1,17 @@
+package com.chatop.services.image_storage;
+
+import java.util.Map;
+
+public interface ImageVariantService {
+
+    /**
+     * Queues the generation of the resized variants of a stored picture, a {@link PictureVariantsGeneratedEvent}
+     * is published once all of them are stored.
+     */
+    void generateVariants(String pictureFileName);
+
+    /**
+     * @return the variant file names keyed by width ("320w") when all of them are already stored, an empty map otherwise
+     */
+    Map<String, String> findReadyVariants(String pictureFileName);
+}
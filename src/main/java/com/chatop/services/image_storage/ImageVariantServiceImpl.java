@@ -0,0 +1,180 @@
+package com.chatop.services.image_storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores downscaled, recompressed JPEG copies of the uploaded pictures, named {@code <name>-<width>w.jpg},
+ * generated on a fixed size worker pool with a bounded queue.
+ * When the queue is full the picture is simply left without variants and clients keep using the original.
+ */
+@Service
+@Slf4j
+public class ImageVariantServiceImpl implements ImageVariantService {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageStorageService imageStorageService;
+    private final ThreadPoolExecutor executor;
+    private final List<Integer> widths;
+    private final float jpegQuality;
+
+    public ImageVariantServiceImpl(ApplicationEventPublisher eventPublisher, ImageStorageService imageStorageService,
+                                   @Value("${image-variants.widths:320,640,1024}") List<Integer> widths,
+                                   @Value("${image-variants.jpeg-quality:0.8}") float jpegQuality,
+                                   @Value("${image-variants.pool-size:2}") int poolSize,
+                                   @Value("${image-variants.queue-capacity:100}") int queueCapacity) {
+        this.eventPublisher = eventPublisher;
+        this.imageStorageService = imageStorageService;
+        this.widths = widths.stream().sorted().toList();
+        this.jpegQuality = jpegQuality;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void generateVariants(String pictureFileName) {
+        try {
+            executor.execute(() -> writeVariants(pictureFileName));
+        } catch (RejectedExecutionException e) {
+            log.warn("Image variant queue full, no variants for {}", pictureFileName);
+        }
+    }
+
+    @Override
+    public Map<String, String> findReadyVariants(String pictureFileName) {
+        Map<String, String> variants = variantFileNames(pictureFileName);
+        for (String variant : variants.values()) {
+            if (!imageStorageService.exists(variant)) {
+                return Map.of();
+            }
+        }
+        return variants;
+    }
+
+    @EventListener
+    public void onPictureStored(PictureStoredEvent event) throws IOException {
+        // a duplicate upload refreshes the date of the variants like the store did for the picture, and only
+        // regenerates them when one is missing, e.g. when the queue was full or the orphan collector deleted it
+        boolean complete = true;
+        for (String variant : variantFileNames(event.pictureFileName()).values()) {
+            complete &= imageStorageService.touch(variant);
+        }
+        if (!complete) {
+            generateVariants(event.pictureFileName());
+        }
+    }
+
+    @EventListener
+    public void onPictureDeleted(PictureDeletedEvent event) throws IOException {
+        for (String variant : variantFileNames(event.pictureFileName()).values()) {
+            imageStorageService.deleteFile(variant);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void writeVariants(String pictureFileName) {
+        try {
+            BufferedImage original;
+            try (InputStream inputStream = imageStorageService.openStream(pictureFileName)) {
+                original = ImageIO.read(inputStream);
+            }
+            if (original == null) {
+                log.error("Unreadable picture {}, no variants generated", pictureFileName);
+                return;
+            }
+            Map<String, String> variants = variantFileNames(pictureFileName);
+            int index = 0;
+            for (String variant : variants.values()) {
+                // never upscale, small originals are only recompressed
+                int width = Math.min(widths.get(index++), original.getWidth());
+                writeJpeg(resize(original, width), variant);
+            }
+            log.info("Image variants generated for {}", pictureFileName);
+            eventPublisher.publishEvent(new PictureVariantsGeneratedEvent(pictureFileName, variants));
+        } catch (IOException | RuntimeException e) {
+            log.error("Error while generating the variants of {}", pictureFileName, e);
+        }
+    }
+
+    private Map<String, String> variantFileNames(String pictureFileName) {
+        int extension = pictureFileName.lastIndexOf('.');
+        String baseName = extension > 0 ? pictureFileName.substring(0, extension) : pictureFileName;
+        Map<String, String> variants = new LinkedHashMap<>();
+        for (int width : widths) {
+            variants.put(width + "w", "%s-%dw.jpg".formatted(baseName, width));
+        }
+        return variants;
+    }
+
+    private static BufferedImage resize(BufferedImage original, int width) {
+        int height = Math.max(1, Math.round((float) original.getHeight() * width / original.getWidth()));
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no alpha channel, transparent PNG areas become white
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private void writeJpeg(BufferedImage image, String variant) throws IOException {
+        Path temporary = Files.createTempFile("variant-", ".jpg");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temporary.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            imageStorageService.storeFile(variant, temporary);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
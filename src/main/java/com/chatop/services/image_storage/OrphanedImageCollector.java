@@ -0,0 +1,155 @@
+package com.chatop.services.image_storage;
+
+import com.chatop.repositories.RentalPictureRepository;
+import com.chatop.repositories.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Deletes the stored pictures (and their variants) that no rental references anymore, e.g. left by a failed
+ * {@code createRental} or a replaced picture.
+ * <p>
+ * The referenced pictures are streamed from the database into an {@link ImageReferenceSet}, then every stored file
+ * is visited at most {@code image-gc.max-files-per-second}. A file is only deleted when it is older than the grace
+ * period, absent from the set and the database still has no reference to it. Every name handed out by the store
+ * (new upload, duplicate upload, committed chunked upload being attached, variant) refreshes the date of its file,
+ * so the grace period covers the time between storing a picture and inserting the rental that references it.
+ * Only content-addressed names are ever considered.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "image-gc.enabled", havingValue = "true", matchIfMissing = true)
+public class OrphanedImageCollector {
+
+    private final ImageStorageService imageStorageService;
+    private final RentalRepository rentalRepository;
+    private final RentalPictureRepository rentalPictureRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Duration gracePeriod;
+    private final long nanosPerFile;
+    private final boolean dryRun;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Counter filesScanned;
+    private final Counter filesDeleted;
+    private final Counter bytesReclaimed;
+    private final Timer runTimer;
+
+    public OrphanedImageCollector(ImageStorageService imageStorageService, RentalRepository rentalRepository,
+                                  RentalPictureRepository rentalPictureRepository, PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${image-gc.grace-period:PT48H}") Duration gracePeriod,
+                                  @Value("${image-gc.max-files-per-second:200}") int maxFilesPerSecond,
+                                  @Value("${image-gc.dry-run:false}") boolean dryRun) {
+        this.imageStorageService = imageStorageService;
+        this.rentalRepository = rentalRepository;
+        this.rentalPictureRepository = rentalPictureRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.gracePeriod = gracePeriod;
+        this.nanosPerFile = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxFilesPerSecond);
+        this.dryRun = dryRun;
+        this.filesScanned = meterRegistry.counter("images.gc.files.scanned");
+        this.filesDeleted = meterRegistry.counter("images.gc.files.deleted");
+        this.bytesReclaimed = meterRegistry.counter("images.gc.bytes.reclaimed");
+        this.runTimer = meterRegistry.timer("images.gc.duration");
+    }
+
+    @Scheduled(fixedDelayString = "${image-gc.interval:PT6H}", initialDelayString = "${image-gc.initial-delay:PT15M}")
+    public void collect() throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            long cutoff = System.currentTimeMillis() - gracePeriod.toMillis();
+            ImageReferenceSet references = loadReferences();
+
+            Run run = new Run();
+            imageStorageService.walkFiles((fileName, size, lastModified) -> {
+                throttle(run);
+                filesScanned.increment();
+                run.scanned++;
+                String digest = ImageReferenceSet.digest(fileName);
+                if (digest == null || lastModified > cutoff || references.contains(digest)) {
+                    return;
+                }
+                if (dryRun) {
+                    if (isReferenced(digest)) {
+                        return;
+                    }
+                } else {
+                    // the date and the database are checked again under the store lock of the name: a duplicate
+                    // upload handed out meanwhile has refreshed the date, one coming after stores the file again
+                    if (!imageStorageService.deleteFileIfStale(fileName, cutoff, () -> !isReferenced(digest))) {
+                        return;
+                    }
+                    filesDeleted.increment();
+                    bytesReclaimed.increment(size);
+                }
+                run.deleted++;
+                run.bytes += size;
+                log.debug("Orphaned image {} {}", fileName, dryRun ? "found" : "deleted");
+            });
+            log.info("Orphaned image collection {}: {} files scanned, {} referenced pictures, {} files ({} bytes) {}",
+                    dryRun ? "dry run" : "done", run.scanned, references.size(), run.deleted, run.bytes,
+                    dryRun ? "to delete" : "deleted");
+        } finally {
+            runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            running.set(false);
+        }
+    }
+
+    private ImageReferenceSet loadReferences() {
+        ImageReferenceSet references = new ImageReferenceSet();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<String> pictures = rentalRepository.streamPictures()) {
+                pictures.forEach(references::add);
+            }
+            try (Stream<String> pictures = rentalPictureRepository.streamPictures()) {
+                pictures.forEach(references::add);
+            }
+        });
+        return references.seal();
+    }
+
+    // a picture referenced after the set was read, checked again for the few candidates only. Matched on the digest
+    // like the set, a URL stored under another host (or before image-url changed) still references the file
+    boolean isReferenced(String digest) {
+        return rentalRepository.existsByPictureContaining(digest) || rentalPictureRepository.existsByPictureContaining(digest);
+    }
+
+    private void throttle(Run run) throws InterruptedIOException {
+        long now = System.nanoTime();
+        if (run.nextFileAt > now) {
+            LockSupport.parkNanos(run.nextFileAt - now);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Orphaned image collection interrupted");
+            }
+        }
+        run.nextFileAt = Math.max(now, run.nextFileAt) + nanosPerFile;
+    }
+
+    private static final class Run {
+        private long nextFileAt;
+        private long scanned;
+        private long deleted;
+        private long bytes;
+    }
+}
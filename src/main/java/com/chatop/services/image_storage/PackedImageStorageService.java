@@ -0,0 +1,582 @@
+package com.chatop.services.image_storage;
+
+import com.chatop.exceptions.ImageNotFoundException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Packed layout: images are appended to segment files of at most {@code image-storage.pack.segment-size} bytes,
+ * so millions of images take a few thousand files instead of one inode each.
+ * <p>
+ * Each record is {@code magic, type, timestamp, name length, name, data length, data}. A deletion appends a
+ * tombstone record, nothing but the timestamp of a record (refreshed when the same image is stored again) is ever
+ * rewritten in place. The name → (segment, offset, length) index lives in memory
+ * and is rebuilt at startup by reading the record headers of every segment in order, a torn record at the end of
+ * the last segment is truncated. Images are read back through memory mapped slices of the segments, and served
+ * straight from the segment with the offset of their record.
+ * <p>
+ * Space of deleted or replaced images is reclaimed by {@link #compact()}: live records of the segments that are
+ * mostly dead are copied to the active segment, the old segment is then deleted one compaction later, once the
+ * requests that may still read it are done.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "image-storage.backend", havingValue = "packed")
+public class PackedImageStorageService extends AbstractImageStorageService {
+
+    private static final int MAGIC = 0x43485049;
+    private static final byte DATA = 1;
+    private static final byte TOMBSTONE = 2;
+    // magic, type, timestamp, name length
+    private static final int FIXED_HEADER_SIZE = 4 + 1 + 8 + 2;
+    private static final int TIMESTAMP_OFFSET = 4 + 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".pack";
+
+    private final Path packDirectory;
+    private final long segmentSize;
+    private final double compactionThreshold;
+
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final Map<String, Location> index = new HashMap<>();
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    // appends are sequential, readers only take the index lock
+    private final Object appendLock = new Object();
+    private Segment active;
+    private final List<Segment> retiredSegments = new ArrayList<>();
+
+    public PackedImageStorageService(ApplicationEventPublisher eventPublisher,
+                                     @Value("${image-storage.pack.path}") String packPath,
+                                     @Value("${image-storage.pack.segment-size:1073741824}") long segmentSize,
+                                     @Value("${image-storage.pack.compaction-threshold:0.5}") double compactionThreshold) {
+        super(eventPublisher);
+        this.packDirectory = Paths.get(packPath);
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(packDirectory);
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(packDirectory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        ids.sort(null);
+
+        indexLock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                Segment segment = openSegment(ids.get(i));
+                segments.put(segment.id, segment);
+                load(segment, i == ids.size() - 1);
+            }
+            index.values().forEach(location -> segments.get(location.segment()).liveBytes += location.recordSize());
+            active = segments.isEmpty() ? createSegment(1) : segments.lastEntry().getValue();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        log.info("Packed image store opened with {} images in {} segments", index.size(), segments.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        indexLock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            for (Segment segment : retiredSegments) {
+                segment.channel.close();
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected Path createSpoolFile() throws IOException {
+        // hidden, skipped when the segments are listed
+        return Files.createTempFile(packDirectory, ".upload-", ".tmp");
+    }
+
+    @Override
+    protected void storeUpload(String fileName, Path file) throws IOException {
+        storeFile(fileName, file);
+    }
+
+    @Override
+    public void storeFile(String fileName, Path source) throws IOException {
+        checkFileName(fileName);
+        try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = sourceChannel.size();
+            synchronized (lockFor(fileName)) {
+                synchronized (appendLock) {
+                    put(fileName, append(fileName, DATA, System.currentTimeMillis(), length,
+                            (target, position) -> transferFully(sourceChannel, target, position, length)));
+                }
+            }
+        }
+        eventPublisher.publishEvent(new ImageFileChangedEvent(fileName));
+    }
+
+    @Override
+    protected boolean refresh(String fileName) throws IOException {
+        synchronized (appendLock) {
+            Location location = lookup(fileName);
+            if (location == null) {
+                return false;
+            }
+            long timestamp = System.currentTimeMillis();
+            long recordOffset = location.offset() - (location.recordSize() - location.length());
+            ByteBuffer buffer = ByteBuffer.allocate(8).putLong(timestamp).flip();
+            FileChannel channel = segment(location.segment()).channel;
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, recordOffset + TIMESTAMP_OFFSET + buffer.position());
+            }
+            put(fileName, new Location(location.segment(), location.offset(), location.length(), location.recordSize(), timestamp));
+            return true;
+        }
+    }
+
+    @Override
+    public void deleteFile(String fileName) throws IOException {
+        synchronized (appendLock) {
+            if (!exists(fileName)) {
+                return;
+            }
+            append(fileName, TOMBSTONE, System.currentTimeMillis(), 0, (target, position) -> { });
+            indexLock.writeLock().lock();
+            try {
+                Location previous = index.remove(fileName);
+                if (previous != null) {
+                    segments.get(previous.segment()).liveBytes -= previous.recordSize();
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+        }
+        eventPublisher.publishEvent(new ImageFileChangedEvent(fileName));
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        checkFileName(fileName);
+        indexLock.readLock().lock();
+        try {
+            return index.containsKey(fileName);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public StoredImage locate(String fileName) {
+        checkFileName(fileName);
+        indexLock.readLock().lock();
+        try {
+            Location location = index.get(fileName);
+            if (location == null) {
+                throw new ImageNotFoundException("Image not found: %s".formatted(fileName));
+            }
+            return new StoredImage(segments.get(location.segment()).path, location.offset(), location.length(), location.timestamp());
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public InputStream openStream(String fileName) throws IOException {
+        checkFileName(fileName);
+        indexLock.readLock().lock();
+        try {
+            Location location = index.get(fileName);
+            if (location == null) {
+                throw new ImageNotFoundException("Image not found: %s".formatted(fileName));
+            }
+            // the mapping stays valid after the segment is closed by a compaction
+            ByteBuffer data = segments.get(location.segment()).channel.map(FileChannel.MapMode.READ_ONLY, location.offset(), location.length());
+            return new ByteBufferInputStream(data);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void walkFiles(StoredFileVisitor visitor) throws IOException {
+        // visited from a copy of the index, the lock is not held while the visitor runs
+        List<Map.Entry<String, Location>> entries;
+        indexLock.readLock().lock();
+        try {
+            entries = index.entrySet().stream().map(entry -> Map.entry(entry.getKey(), entry.getValue())).toList();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        for (Map.Entry<String, Location> entry : entries) {
+            visitor.visit(entry.getKey(), entry.getValue().length(), entry.getValue().timestamp());
+        }
+    }
+
+    /**
+     * Copies the live records of the segments whose dead bytes exceed {@code image-storage.pack.compaction-threshold}
+     * to the active segment.
+     */
+    @Scheduled(fixedDelayString = "${image-storage.pack.compaction-interval:PT1H}")
+    public void compact() throws IOException {
+        deleteRetiredSegments();
+
+        List<Segment> candidates = new ArrayList<>();
+        indexLock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.size > 0 && 1 - (double) segment.liveBytes / segment.size >= compactionThreshold) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+
+        for (Segment segment : candidates) {
+            compact(segment);
+        }
+    }
+
+    /**
+     * Images stored here by {@code FlatImageStorageMigration}, names are kept so the stored URLs do not change.
+     */
+    public int importFlatFiles(Path directory, boolean deleteSources) throws IOException {
+        int imported = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.startsWith(".") || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                if (!exists(fileName)) {
+                    storeFile(fileName, file);
+                    imported++;
+                }
+                if (deleteSources) {
+                    Files.delete(file);
+                }
+            }
+        }
+        return imported;
+    }
+
+    private void compact(Segment segment) throws IOException {
+        List<String> moved = new ArrayList<>();
+        boolean olderSegments;
+        indexLock.readLock().lock();
+        try {
+            // a retired segment stays on disk until the next pass, its deleted images must stay deleted
+            olderSegments = segments.firstKey() < segment.id
+                    || retiredSegments.stream().anyMatch(retired -> retired.id < segment.id);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+
+        long position = 0;
+        while (position < segment.size) {
+            Record record = readRecord(segment.channel, position, segment.size);
+            if (record == null) {
+                break;
+            }
+            if (record.type() == DATA) {
+                synchronized (appendLock) {
+                    // compared by position only, the timestamp may have been refreshed since the record was read
+                    Location live = lookup(record.name());
+                    if (live != null && live.segment() == segment.id && live.offset() == record.dataOffset()) {
+                        Location copy = append(record.name(), DATA, live.timestamp(), record.length(), (target, targetPosition) -> {
+                            ByteBuffer data = segment.channel.map(FileChannel.MapMode.READ_ONLY, record.dataOffset(), record.length());
+                            while (data.hasRemaining()) {
+                                targetPosition += target.write(data, targetPosition);
+                            }
+                        });
+                        put(record.name(), copy);
+                        moved.add(record.name());
+                    }
+                }
+            } else if (olderSegments) {
+                // still needed while an older segment may hold the deleted image
+                synchronized (appendLock) {
+                    if (lookup(record.name()) == null) {
+                        append(record.name(), TOMBSTONE, record.timestamp(), 0, (target, targetPosition) -> { });
+                    }
+                }
+            }
+            position = record.end();
+        }
+
+        indexLock.writeLock().lock();
+        try {
+            segments.remove(segment.id);
+            retiredSegments.add(segment);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        moved.forEach(fileName -> eventPublisher.publishEvent(new ImageFileChangedEvent(fileName)));
+        log.info("Image segment {} compacted, {} images moved", segment.id, moved.size());
+    }
+
+    private void deleteRetiredSegments() throws IOException {
+        List<Segment> retired;
+        indexLock.writeLock().lock();
+        try {
+            retired = new ArrayList<>(retiredSegments);
+            retiredSegments.clear();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        for (Segment segment : retired) {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        }
+    }
+
+    private Location lookup(String fileName) {
+        indexLock.readLock().lock();
+        try {
+            return index.get(fileName);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private Segment segment(int id) {
+        indexLock.readLock().lock();
+        try {
+            return segments.get(id);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private void put(String fileName, Location location) {
+        indexLock.writeLock().lock();
+        try {
+            Location previous = index.put(fileName, location);
+            if (previous != null) {
+                segments.get(previous.segment()).liveBytes -= previous.recordSize();
+            }
+            segments.get(location.segment()).liveBytes += location.recordSize();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends one record to the active segment, rolling to a new segment when it would grow past the segment size.
+     * A failed write is truncated away so the segment stays readable.
+     */
+    private Location append(String fileName, byte type, long timestamp, long length, DataWriter dataWriter) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE + name.length + 8)
+                .putInt(MAGIC)
+                .put(type)
+                .putLong(timestamp)
+                .putShort((short) name.length)
+                .put(name)
+                .putLong(length)
+                .flip();
+        long recordSize = header.remaining() + length;
+
+        synchronized (appendLock) {
+            if (active.size > 0 && active.size + recordSize > segmentSize) {
+                Segment next = createSegment(active.id + 1);
+                indexLock.writeLock().lock();
+                try {
+                    active = next;
+                } finally {
+                    indexLock.writeLock().unlock();
+                }
+            }
+            long recordOffset = active.size;
+            long dataOffset = recordOffset + header.remaining();
+            try {
+                long position = recordOffset;
+                while (header.hasRemaining()) {
+                    position += active.channel.write(header, position);
+                }
+                dataWriter.write(active.channel, dataOffset);
+            } catch (IOException | RuntimeException e) {
+                active.channel.truncate(recordOffset);
+                throw e;
+            }
+            active.size = dataOffset + length;
+            return new Location(active.id, dataOffset, length, recordSize, timestamp);
+        }
+    }
+
+    private void load(Segment segment, boolean last) throws IOException {
+        long size = segment.channel.size();
+        long position = 0;
+        while (position < size) {
+            Record record = readRecord(segment.channel, position, size);
+            if (record == null) {
+                if (last) {
+                    log.warn("Torn record at {} in image segment {}, truncated", position, segment.id);
+                    segment.channel.truncate(position);
+                } else {
+                    log.error("Corrupted record at {} in image segment {}, the rest of the segment is ignored", position, segment.id);
+                }
+                break;
+            }
+            if (record.type() == DATA) {
+                index.put(record.name(), new Location(segment.id, record.dataOffset(), record.length(), record.end() - position, record.timestamp()));
+            } else {
+                index.remove(record.name());
+            }
+            position = record.end();
+        }
+        segment.size = position;
+    }
+
+    /**
+     * @return the record starting at {@code position}, {@code null} when it is incomplete or corrupted
+     */
+    private static Record readRecord(FileChannel channel, long position, long size) throws IOException {
+        try {
+            ByteBuffer fixed = readFully(channel, position, FIXED_HEADER_SIZE);
+            if (fixed.getInt() != MAGIC) {
+                return null;
+            }
+            byte type = fixed.get();
+            long timestamp = fixed.getLong();
+            int nameLength = Short.toUnsignedInt(fixed.getShort());
+            ByteBuffer rest = readFully(channel, position + FIXED_HEADER_SIZE, nameLength + 8);
+            byte[] name = new byte[nameLength];
+            rest.get(name);
+            long length = rest.getLong();
+            long dataOffset = position + FIXED_HEADER_SIZE + nameLength + 8;
+            if ((type != DATA && type != TOMBSTONE) || length < 0 || dataOffset + length > size) {
+                return null;
+            }
+            return new Record(type, timestamp, new String(name, StandardCharsets.UTF_8), dataOffset, length);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void transferFully(ReadableByteChannel source, FileChannel target, long position, long length) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = target.transferFrom(source, position + transferred, length - transferred);
+            if (count <= 0) {
+                throw new EOFException("Image ended after %d of %d bytes".formatted(transferred, length));
+            }
+            transferred += count;
+        }
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path path = packDirectory.resolve("%s%06d%s".formatted(SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        return new Segment(id, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = openSegment(id);
+        indexLock.writeLock().lock();
+        try {
+            segments.put(id, segment);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        return segment;
+    }
+
+    private interface DataWriter {
+        void write(FileChannel target, long position) throws IOException;
+    }
+
+    private record Location(int segment, long offset, long length, long recordSize, long timestamp) {
+    }
+
+    private record Record(byte type, long timestamp, String name, long dataOffset, long length) {
+        long end() {
+            return dataOffset + length;
+        }
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private long liveBytes;
+
+        private Segment(int id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.chatop.services.image_storage;
+
+public record PictureDeletedEvent(String pictureFileName) {
+}
@@ -0,0 +1,6 @@
+package com.chatop.services.image_storage;
+
+import java.util.Map;
+
+public record PictureVariantsGeneratedEvent(String pictureFileName, Map<String, String> variantFileNames) {
+}
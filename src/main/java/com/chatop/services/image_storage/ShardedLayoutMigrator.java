@@ -0,0 +1,58 @@
+package com.chatop.services.image_storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Moves the files of the flat layout into their shard on a background thread when the sharded layout is enabled.
+ * The application keeps serving meanwhile: {@link ImageStorageServiceImpl} falls back to the root directory until
+ * the migration has written its marker file. An interrupted migration resumes from the files left at the root.
+ */
+@Component
+@Slf4j
+public class ShardedLayoutMigrator {
+
+    private final ImageStorageService imageStorageService;
+
+    public ShardedLayoutMigrator(ImageStorageService imageStorageService) {
+        this.imageStorageService = imageStorageService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!(imageStorageService instanceof ImageStorageServiceImpl flatStorage) || !flatStorage.isSharded() ||
+                Files.exists(flatStorage.root().resolve(ImageStorageServiceImpl.MIGRATED_MARKER))) {
+            return;
+        }
+        Thread thread = new Thread(() -> migrate(flatStorage), "image-shard-migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void migrate(ImageStorageServiceImpl flatStorage) {
+        log.info("Moving the images of {} to the sharded layout", flatStorage.root());
+        long moved = 0;
+        try (Stream<Path> files = Files.list(flatStorage.root())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith(".") || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                flatStorage.moveToShard(file);
+                if (++moved % 10_000 == 0) {
+                    log.info("{} images moved to the sharded layout", moved);
+                }
+            }
+            flatStorage.markMigrated();
+            log.info("Sharded layout migration done, {} images moved", moved);
+        } catch (IOException | RuntimeException e) {
+            log.error("Sharded layout migration stopped after {} images, it resumes on the next start", moved, e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.chatop.services.image_storage;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface StoredFileVisitor {
+
+    void visit(String fileName, long size, long lastModified) throws IOException;
+}
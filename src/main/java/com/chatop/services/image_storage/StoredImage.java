@@ -0,0 +1,9 @@
+package com.chatop.services.image_storage;
+
+import java.nio.file.Path;
+
+/**
+ * Where the bytes of a stored image live: {@code length} bytes at {@code offset} in {@code file}.
+ */
+public record StoredImage(Path file, long offset, long length, long lastModified) {
+}
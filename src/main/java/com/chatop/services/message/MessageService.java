@@ -1,7 +1,10 @@
 package com.chatop.services.message;
 
 import com.chatop.dtos.MessageDTO;
+import com.chatop.dtos.MessagesPageResponse;
 
 public interface MessageService {
     void sendMessage(MessageDTO messageDTO);
+    MessagesPageResponse retrieveRentalMessages(Integer rentalId, String cursor, Integer limit);
+    MessagesPageResponse retrieveInbox(String cursor, Integer limit);
 }
@@ -1,20 +1,29 @@
 package com.chatop.services.message;
 
 import com.chatop.dtos.MessageDTO;
+import com.chatop.dtos.MessageSummaryDTO;
+import com.chatop.dtos.MessagesPageResponse;
+import com.chatop.exceptions.InvalidCursorException;
 import com.chatop.exceptions.RentalNotFondException;
+import com.chatop.exceptions.UnauthorizedUserException;
 import com.chatop.models.Message;
 import com.chatop.models.Rental;
 import com.chatop.models.User;
 import com.chatop.repositories.MessageRepository;
 import com.chatop.repositories.RentalRepository;
 import com.chatop.repositories.UserRepository;
+import com.chatop.services.pagination.KeysetCursor;
+import com.chatop.services.pagination.MessageCursor;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
 @AllArgsConstructor
@@ -26,12 +35,17 @@ public class MessageServiceImpl implements MessageService {
     private final RentalRepository rentalRepository;
     private final UserRepository userRepository;
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Override
     public void sendMessage(MessageDTO messageDTO) {
 
+        Rental rental = getRentalById(messageDTO.rental_id());
         Message message = Message.builder()
                 .message(messageDTO.message())
-                .rental(getRentalById(messageDTO.rental_id()))
+                .rental(rental)
+                .ownerId(rental.getOwner().getId())
                 .user(getUserById(messageDTO.user_id()))
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
@@ -41,6 +55,69 @@ public class MessageServiceImpl implements MessageService {
         log.info("Message send with success");
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public MessagesPageResponse retrieveRentalMessages(Integer rentalId, String cursor, Integer limit) {
+        Integer ownerId = rentalRepository.findOwnerIdById(rentalId).orElseThrow(
+                () -> new RentalNotFondException("Rental not found with id:{%s}".formatted(rentalId)));
+        if (!ownerId.equals(getAuthenticatedUserId())) {
+            log.error("Messages of rental id:{} requested by another user than its owner", rentalId);
+            throw new UnauthorizedUserException("Only the owner can read the messages of the rental");
+        }
+
+        int pageSize = KeysetCursor.clampLimit(limit, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+
+        List<MessageSummaryDTO> messages;
+        if (cursor == null || cursor.isBlank()) {
+            messages = messageRepository.findRentalFirstPage(rentalId, pageRequest);
+        } else {
+            MessageCursor after = MessageCursor.decode(cursor);
+            if (!rentalId.equals(after.rentalId())) {
+                throw new InvalidCursorException("Invalid pagination cursor: %s".formatted(cursor));
+            }
+            messages = messageRepository.findRentalPageAfter(rentalId, after.createdAt(), after.id(), pageRequest);
+        }
+
+        MessagesPageResponse page = toPage(messages, pageSize);
+        log.info("Messages page of rental id:{} retrieved successfully with {} messages", rentalId, page.messages().size());
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MessagesPageResponse retrieveInbox(String cursor, Integer limit) {
+        Integer ownerId = getAuthenticatedUserId();
+        int pageSize = KeysetCursor.clampLimit(limit, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+
+        List<MessageSummaryDTO> messages;
+        if (cursor == null || cursor.isBlank()) {
+            messages = messageRepository.findInboxFirstPage(ownerId, pageRequest);
+        } else {
+            MessageCursor after = MessageCursor.decode(cursor);
+            messages = messageRepository.findInboxPageAfter(ownerId, after.rentalId(), after.createdAt(), after.id(), pageRequest);
+        }
+
+        MessagesPageResponse page = toPage(messages, pageSize);
+        log.info("Inbox page of user id:{} retrieved successfully with {} messages", ownerId, page.messages().size());
+        return page;
+    }
+
+    private static MessagesPageResponse toPage(List<MessageSummaryDTO> messages, int pageSize) {
+        if (messages.size() <= pageSize) {
+            return new MessagesPageResponse(messages, null);
+        }
+        List<MessageSummaryDTO> page = messages.subList(0, pageSize);
+        MessageSummaryDTO last = page.get(pageSize - 1);
+        return new MessagesPageResponse(page, new MessageCursor(last.rental_id(), last.created_at(), last.id()).encode());
+    }
+
+    private Integer getAuthenticatedUserId() {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByEmail(email).orElseThrow(() -> new UsernameNotFoundException("User not found in DB!!")).getId();
+    }
+
 
     private Rental getRentalById(Integer id) {
         if(id == null) {
@@ -0,0 +1,45 @@
+package com.chatop.services.pagination;
+
+import com.chatop.exceptions.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * Opaque keyset cursor: the sort key values of the last row of a page, joined and base64url encoded.
+ */
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Object... parts) {
+        String raw = Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining(SEPARATOR));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedParts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid pagination cursor: %s".formatted(cursor));
+        }
+        String[] parts = raw.split("\\" + SEPARATOR, -1);
+        if (parts.length != expectedParts) {
+            throw new InvalidCursorException("Invalid pagination cursor: %s".formatted(cursor));
+        }
+        return parts;
+    }
+
+    public static int clampLimit(Integer limit, int defaultLimit, int maxLimit) {
+        if (limit == null || limit <= 0) {
+            return defaultLimit;
+        }
+        return Math.min(limit, maxLimit);
+    }
+}
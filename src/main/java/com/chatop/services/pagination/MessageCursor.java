@@ -0,0 +1,22 @@
+package com.chatop.services.pagination;
+
+import com.chatop.exceptions.InvalidCursorException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+public record MessageCursor(Integer rentalId, LocalDateTime createdAt, Integer id) {
+
+    public String encode() {
+        return KeysetCursor.encode(rentalId, createdAt, id);
+    }
+
+    public static MessageCursor decode(String cursor) {
+        String[] parts = KeysetCursor.decode(cursor, 3);
+        try {
+            return new MessageCursor(Integer.valueOf(parts[0]), LocalDateTime.parse(parts[1]), Integer.valueOf(parts[2]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidCursorException("Invalid pagination cursor: %s".formatted(cursor));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.chatop.services.pagination;
+
+import com.chatop.exceptions.InvalidCursorException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+public record RentalCursor(LocalDateTime createdAt, Integer id) {
+
+    public String encode() {
+        return KeysetCursor.encode(createdAt, id);
+    }
+
+    public static RentalCursor decode(String cursor) {
+        String[] parts = KeysetCursor.decode(cursor, 2);
+        try {
+            return new RentalCursor(LocalDateTime.parse(parts[0]), Integer.valueOf(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidCursorException("Invalid pagination cursor: %s".formatted(cursor));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+@Slf4j
+public class RentalCacheListener {
+
+    public static final String RENTALS_CACHE = "rentals";
+
+    private final CacheManager cacheManager;
+
+    public RentalCacheListener(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    // synchronized so that the version read and the put of one event are not interleaved with another's
+    @TransactionalEventListener
+    public synchronized void onRentalChanged(RentalChangedEvent event) {
+        Cache cache = cacheManager.getCache(RENTALS_CACHE);
+        if (cache == null) {
+            return;
+        }
+        RentalDTO cached = cache.get(event.rental().id(), RentalDTO.class);
+        if (cached != null && event.isStale(cached.version(), cached.updated_at())) {
+            log.debug("Stale change of rental id:{} at version {} skipped", event.rental().id(), event.rental().version());
+            return;
+        }
+        cache.put(event.rental().id(), event.rental());
+        log.debug("Rental cache refreshed for id:{}", event.rental().id());
+    }
+}
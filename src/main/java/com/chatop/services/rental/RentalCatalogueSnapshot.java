@@ -0,0 +1,371 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.repositories.RentalRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Pre-serialized {@code RentalsResponse} JSON of the whole catalogue, with its gzip encoding.
+ * <p>
+ * Each rental is kept as its own serialized fragment, in immutable blocks of {@value #BLOCK_SIZE} consecutive ids.
+ * A write re-serializes the rental that changed and replaces its block only; a snapshot is the array of the current
+ * blocks and is written fragment by fragment, the document is never assembled into one array. The gzip encoding is
+ * one deflate stream made of the blocks compressed on their own, each ended by a sync flush so that they can be
+ * concatenated: only the blocks changed since the previous gzip read are compressed again, the CRC of the trailer is
+ * computed over the fragments.
+ */
+@Component
+@Slf4j
+public class RentalCatalogueSnapshot {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private static final byte[] PREFIX = "{\"rentals\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEPARATOR = {','};
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    // empty final block with fixed Huffman codes, ends the deflate stream
+    private static final byte[] DEFLATE_END = {0x03, 0x00};
+    private static final byte[] PREFIX_DEFLATED = deflate(PREFIX);
+    private static final byte[] SUFFIX_DEFLATED = deflate(SUFFIX);
+    private static final byte[] SEPARATOR_DEFLATED = deflate(SEPARATOR);
+
+    private final RentalRepository rentalRepository;
+    private final RentalGalleryLoader rentalGalleryLoader;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter rentalDTOWriter;
+
+    private final NavigableMap<Integer, Block> blocks = new TreeMap<>();
+    private final List<RentalChangedEvent> pendingChanges = new ArrayList<>();
+    private boolean loaded;
+    private int count;
+    private LocalDateTime lastUpdatedAt;
+    private volatile Snapshot current;
+
+    public RentalCatalogueSnapshot(RentalRepository rentalRepository, RentalGalleryLoader rentalGalleryLoader,
+                                   PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.rentalRepository = rentalRepository;
+        this.rentalGalleryLoader = rentalGalleryLoader;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rentalDTOWriter = objectMapper.writerFor(RentalDTO.class);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            // the galleries are read for each batch of streamed rentals, the catalogue is never held as DTOs
+            try (Stream<RentalDTO> rentals = rentalRepository.streamAllRentalDTOs()) {
+                List<RentalDTO> batch = new ArrayList<>(RentalGalleryLoader.BATCH_SIZE);
+                Iterator<RentalDTO> iterator = rentals.iterator();
+                while (iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    if (batch.size() == RentalGalleryLoader.BATCH_SIZE || !iterator.hasNext()) {
+                        List<RentalDTO> withGalleries = rentalGalleryLoader.withGalleries(batch);
+                        synchronized (this) {
+                            withGalleries.forEach(rental -> apply(new RentalChangedEvent(rental)));
+                        }
+                        batch.clear();
+                    }
+                }
+            }
+        });
+
+        synchronized (this) {
+            // changes committed while the catalogue was being read win over what was read, unless older than it
+            pendingChanges.forEach(this::apply);
+            pendingChanges.clear();
+            loaded = true;
+            current = null;
+        }
+        log.info("Rental catalogue snapshot loaded with {} rentals", count);
+    }
+
+    @TransactionalEventListener
+    public synchronized void onRentalChanged(RentalChangedEvent event) {
+        if (!loaded) {
+            pendingChanges.add(event);
+            return;
+        }
+        apply(event);
+        current = null;
+    }
+
+    /**
+     * @return the current snapshot, or {@code null} while the catalogue has not been loaded yet
+     */
+    public Snapshot current() {
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                return null;
+            }
+            if (current == null) {
+                current = new Snapshot(blocks.values().toArray(Block[]::new), count, lastUpdatedAt);
+            }
+            return current;
+        }
+    }
+
+    private void apply(RentalChangedEvent event) {
+        RentalDTO rental = event.rental();
+        int key = rental.id() / BLOCK_SIZE;
+        Block block = blocks.get(key);
+        Revision held = block == null ? null : block.revisionOf(rental.id());
+        if (held != null && event.isStale(held.version(), held.updatedAt())) {
+            return;
+        }
+        Revision revision = new Revision(rental.version(), rental.updated_at());
+        Block updated = block == null
+                ? Block.of(rental.id(), revision, serialize(rental))
+                : block.with(rental.id(), revision, serialize(rental));
+        blocks.put(key, updated);
+        count += updated.ids.length - (block == null ? 0 : block.ids.length);
+        if (rental.updated_at() != null && (lastUpdatedAt == null || rental.updated_at().isAfter(lastUpdatedAt))) {
+            lastUpdatedAt = rental.updated_at();
+        }
+    }
+
+    private byte[] serialize(RentalDTO rental) {
+        try {
+            return rentalDTOWriter.writeValueAsBytes(rental);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Bytes compressed on their own into a raw deflate stream ended by a sync flush, so that they can be followed by
+     * other such streams.
+     */
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            int written;
+            do {
+                written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                output.write(buffer, 0, written);
+            } while (written == buffer.length);
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static final class Snapshot {
+
+        private final Block[] blocks;
+        private final int count;
+        private final LocalDateTime lastUpdatedAt;
+        private final long jsonLength;
+        private volatile Gzip gzip;
+
+        private Snapshot(Block[] blocks, int count, LocalDateTime lastUpdatedAt) {
+            this.blocks = blocks;
+            this.count = count;
+            this.lastUpdatedAt = lastUpdatedAt;
+            long length = PREFIX.length + SUFFIX.length + Math.max(0, blocks.length - 1);
+            for (Block block : blocks) {
+                length += block.length;
+            }
+            this.jsonLength = length;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public LocalDateTime lastUpdatedAt() {
+            return lastUpdatedAt;
+        }
+
+        public long jsonLength() {
+            return jsonLength;
+        }
+
+        public void writeJson(OutputStream output) throws IOException {
+            output.write(PREFIX);
+            for (int i = 0; i < blocks.length; i++) {
+                if (i > 0) {
+                    output.write(SEPARATOR);
+                }
+                blocks[i].writeTo(output);
+            }
+            output.write(SUFFIX);
+        }
+
+        public long gzipLength() {
+            return gzip().length;
+        }
+
+        public void writeGzip(OutputStream output) throws IOException {
+            Gzip encoded = gzip();
+            output.write(GZIP_HEADER);
+            output.write(PREFIX_DEFLATED);
+            for (int i = 0; i < blocks.length; i++) {
+                if (i > 0) {
+                    output.write(SEPARATOR_DEFLATED);
+                }
+                output.write(encoded.blocks[i]);
+            }
+            output.write(SUFFIX_DEFLATED);
+            output.write(DEFLATE_END);
+            output.write(encoded.trailer);
+        }
+
+        private Gzip gzip() {
+            Gzip encoded = gzip;
+            if (encoded == null) {
+                // compressed twice at worst by concurrent readers, the blocks cache their compressed bytes
+                byte[][] deflated = new byte[blocks.length][];
+                long length = GZIP_HEADER.length + PREFIX_DEFLATED.length + SUFFIX_DEFLATED.length
+                        + (long) Math.max(0, blocks.length - 1) * SEPARATOR_DEFLATED.length + DEFLATE_END.length + 8;
+                for (int i = 0; i < blocks.length; i++) {
+                    deflated[i] = blocks[i].deflated();
+                    length += deflated[i].length;
+                }
+
+                CRC32 crc = new CRC32();
+                try {
+                    writeJson(new CheckedOutputStream(OutputStream.nullOutputStream(), crc));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                byte[] trailer = new byte[8];
+                writeIntLittleEndian(trailer, 0, (int) crc.getValue());
+                writeIntLittleEndian(trailer, 4, (int) jsonLength);
+                encoded = new Gzip(deflated, trailer, length);
+                gzip = encoded;
+            }
+            return encoded;
+        }
+
+        private static void writeIntLittleEndian(byte[] bytes, int offset, int value) {
+            for (int i = 0; i < 4; i++) {
+                bytes[offset + i] = (byte) (value >>> (8 * i));
+            }
+        }
+    }
+
+    /**
+     * Serialized rentals of one range of {@code BLOCK_SIZE} ids, sorted by id. Replaced as a whole on a change,
+     * so the snapshots already handed out never see it.
+     */
+    private static final class Block {
+
+        private final int[] ids;
+        private final Revision[] revisions;
+        private final byte[][] fragments;
+        // fragments joined by separators
+        private final long length;
+        private volatile byte[] deflated;
+
+        private Block(int[] ids, Revision[] revisions, byte[][] fragments) {
+            this.ids = ids;
+            this.revisions = revisions;
+            this.fragments = fragments;
+            long joined = fragments.length - 1;
+            for (byte[] fragment : fragments) {
+                joined += fragment.length;
+            }
+            this.length = joined;
+        }
+
+        private static Block of(int id, Revision revision, byte[] fragment) {
+            return new Block(new int[]{id}, new Revision[]{revision}, new byte[][]{fragment});
+        }
+
+        private Revision revisionOf(int id) {
+            int position = Arrays.binarySearch(ids, id);
+            return position >= 0 ? revisions[position] : null;
+        }
+
+        private Block with(int id, Revision revision, byte[] fragment) {
+            int position = Arrays.binarySearch(ids, id);
+            if (position >= 0) {
+                Revision[] replacedRevisions = revisions.clone();
+                byte[][] replacedFragments = fragments.clone();
+                replacedRevisions[position] = revision;
+                replacedFragments[position] = fragment;
+                return new Block(ids, replacedRevisions, replacedFragments);
+            }
+            int insertion = -position - 1;
+            int[] grownIds = new int[ids.length + 1];
+            Revision[] grownRevisions = new Revision[ids.length + 1];
+            byte[][] grownFragments = new byte[ids.length + 1][];
+            System.arraycopy(ids, 0, grownIds, 0, insertion);
+            System.arraycopy(revisions, 0, grownRevisions, 0, insertion);
+            System.arraycopy(fragments, 0, grownFragments, 0, insertion);
+            grownIds[insertion] = id;
+            grownRevisions[insertion] = revision;
+            grownFragments[insertion] = fragment;
+            System.arraycopy(ids, insertion, grownIds, insertion + 1, ids.length - insertion);
+            System.arraycopy(revisions, insertion, grownRevisions, insertion + 1, ids.length - insertion);
+            System.arraycopy(fragments, insertion, grownFragments, insertion + 1, ids.length - insertion);
+            return new Block(grownIds, grownRevisions, grownFragments);
+        }
+
+        private void writeTo(OutputStream output) throws IOException {
+            for (int i = 0; i < fragments.length; i++) {
+                if (i > 0) {
+                    output.write(SEPARATOR);
+                }
+                output.write(fragments[i]);
+            }
+        }
+
+        private byte[] deflated() {
+            byte[] compressed = deflated;
+            if (compressed == null) {
+                ByteArrayOutputStream joined = new ByteArrayOutputStream(Math.toIntExact(length));
+                try {
+                    writeTo(joined);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                compressed = deflate(joined.toByteArray());
+                deflated = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    // what a change is compared with before it replaces the fragment of its rental
+    private record Revision(Long version, LocalDateTime updatedAt) {
+    }
+
+    private record Gzip(byte[][] blocks, byte[] trailer, long length) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link RentalServiceImpl} whenever a rental is created or updated, carrying its new state.
+ * <p>
+ * The listeners receive the events after commit, in the order the committing threads reach them, which is not always
+ * the commit order: an event is only applied over a state of the rental that is not newer.
+ */
+public record RentalChangedEvent(RentalDTO rental) {
+
+    /**
+     * @param heldVersion version of the rental already held by the listener, {@code null} when it holds none
+     * @return whether the rental carried is older than the one held, and must not replace it
+     */
+    public boolean isStale(Long heldVersion) {
+        return isStale(heldVersion, null);
+    }
+
+    /**
+     * Same as {@link #isStale(Long)}, the {@code updated_at} ordering the changes that keep the version: the picture
+     * variants recorded by {@link RentalPictureVariantsListener}.
+     */
+    public boolean isStale(Long heldVersion, LocalDateTime heldUpdatedAt) {
+        if (heldVersion == null || rental.version() == null) {
+            return false;
+        }
+        if (!rental.version().equals(heldVersion)) {
+            return rental.version() < heldVersion;
+        }
+        return heldUpdatedAt != null && rental.updated_at() != null && rental.updated_at().isBefore(heldUpdatedAt);
+    }
+}
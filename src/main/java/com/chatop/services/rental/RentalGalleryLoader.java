@@ -0,0 +1,55 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.dtos.RentalPictureDTO;
+import com.chatop.dtos.RentalPictureRow;
+import com.chatop.repositories.RentalPictureRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills in the galleries of a list of rentals with one query per {@value #BATCH_SIZE} rentals, never one per rental.
+ */
+@Component
+public class RentalGalleryLoader {
+
+    static final int BATCH_SIZE = 1000;
+
+    private final RentalPictureRepository rentalPictureRepository;
+
+    public RentalGalleryLoader(RentalPictureRepository rentalPictureRepository) {
+        this.rentalPictureRepository = rentalPictureRepository;
+    }
+
+    public List<RentalDTO> withGalleries(List<RentalDTO> rentals) {
+        if (rentals.isEmpty()) {
+            return rentals;
+        }
+        List<Integer> ids = rentals.stream().map(RentalDTO::id).toList();
+        Map<Integer, List<RentalPictureDTO>> galleries = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+            for (RentalPictureRow row : rentalPictureRepository.findRowsByRentalIdIn(batch)) {
+                galleries.computeIfAbsent(row.rentalId(), rentalId -> new ArrayList<>()).add(row.toDTO());
+            }
+        }
+        if (galleries.isEmpty()) {
+            return rentals;
+        }
+
+        List<RentalDTO> withGalleries = new ArrayList<>(rentals.size());
+        for (RentalDTO rental : rentals) {
+            List<RentalPictureDTO> gallery = galleries.get(rental.id());
+            withGalleries.add(gallery == null ? rental : rental.withGallery(gallery));
+        }
+        return withGalleries;
+    }
+
+    public RentalDTO withGallery(RentalDTO rental) {
+        return withGalleries(List.of(rental)).get(0);
+    }
+}
@@ -0,0 +1,12 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface RentalGalleryService {
+
+    RentalDTO addPictures(Integer rentalId, List<MultipartFile> pictures) throws IOException;
+}
@@ -0,0 +1,181 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.exceptions.FiledNotNullOrEmptyException;
+import com.chatop.exceptions.InvalidUploadException;
+import com.chatop.exceptions.RentalNotFondException;
+import com.chatop.exceptions.UnauthorizedUserException;
+import com.chatop.models.Rental;
+import com.chatop.models.RentalPicture;
+import com.chatop.models.User;
+import com.chatop.repositories.RentalPictureRepository;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.repositories.UserRepository;
+import com.chatop.services.image_storage.ImageStorageService;
+import com.chatop.services.image_storage.ImageVariantService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adds pictures to the gallery of a rental. The files of a request are checked and stored concurrently on a
+ * fixed size pool with a bounded queue; when the queue is full the request thread stores the file itself.
+ * The rows are then inserted in one transaction, as a single JDBC batch.
+ */
+@Service
+@Slf4j
+public class RentalGalleryServiceImpl implements RentalGalleryService {
+
+    private final RentalRepository rentalRepository;
+    private final RentalPictureRepository rentalPictureRepository;
+    private final UserRepository userRepository;
+    private final ImageStorageService imageStorageService;
+    private final ImageVariantService imageVariantService;
+    private final RentalGalleryLoader rentalGalleryLoader;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final int maxPictures;
+
+    @Value("${image-url}")
+    private String imageUrl;
+
+    public RentalGalleryServiceImpl(RentalRepository rentalRepository, RentalPictureRepository rentalPictureRepository,
+                                    UserRepository userRepository, ImageStorageService imageStorageService,
+                                    ImageVariantService imageVariantService, RentalGalleryLoader rentalGalleryLoader,
+                                    ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                                    @Value("${rental-gallery.pool-size:4}") int poolSize,
+                                    @Value("${rental-gallery.queue-capacity:50}") int queueCapacity,
+                                    @Value("${rental-gallery.max-pictures:20}") int maxPictures) {
+        this.rentalRepository = rentalRepository;
+        this.rentalPictureRepository = rentalPictureRepository;
+        this.userRepository = userRepository;
+        this.imageStorageService = imageStorageService;
+        this.imageVariantService = imageVariantService;
+        this.rentalGalleryLoader = rentalGalleryLoader;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxPictures = maxPictures;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rental-gallery-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public RentalDTO addPictures(Integer rentalId, List<MultipartFile> pictures) throws IOException {
+        if (pictures == null || pictures.isEmpty() || pictures.stream().anyMatch(MultipartFile::isEmpty)) {
+            log.error("Gallery pictures are missing");
+            throw new FiledNotNullOrEmptyException("Pictures cannot be null or empty");
+        }
+        if (pictures.size() > maxPictures) {
+            log.error("{} gallery pictures sent at once", pictures.size());
+            throw new InvalidUploadException("At most %d pictures can be added at once".formatted(maxPictures));
+        }
+
+        RentalDTO rental = rentalRepository.findRentalDTOById(rentalId).orElseThrow(
+                () -> new RentalNotFondException("Rental not found with id:{%s}".formatted(rentalId)));
+        User authUser = getAuthenticatedUser();
+        if (!authUser.getId().equals(rental.owner_id())) {
+            log.error("User id:{} is not the owner of rental id:{}", authUser.getId(), rentalId);
+            throw new UnauthorizedUserException("Only the owner can add pictures to the rental");
+        }
+
+        // the files are stored before the transaction starts, no connection is held during the file work
+        List<String> fileNames = storePictures(pictures);
+
+        RentalDTO updated = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            // locks the rental row, concurrent additions to the same gallery get consecutive positions
+            if (rentalRepository.touchRentals(List.of(rentalId), now) == 0) {
+                throw new RentalNotFondException("Rental not found with id:{%s}".formatted(rentalId));
+            }
+            int position = rentalPictureRepository.findMaxPosition(rentalId) + 1;
+            Rental rentalReference = rentalRepository.getReferenceById(rentalId);
+
+            List<RentalPicture> rows = new ArrayList<>(fileNames.size());
+            for (String fileName : fileNames) {
+                // variants written before this insert were missed by RentalPictureVariantsListener
+                Map<String, String> variants = imageVariantService.findReadyVariants(fileName);
+                rows.add(RentalPicture.builder()
+                        .rental(rentalReference)
+                        .position(position++)
+                        .picture(imageUrl + fileName)
+                        .pictureVariants(variants.isEmpty() ? null : RentalServiceImpl.toPictureUrls(imageUrl, variants))
+                        .createdAt(now)
+                        .build());
+            }
+            rentalPictureRepository.saveAll(rows);
+
+            RentalDTO result = rentalGalleryLoader.withGallery(rentalRepository.findRentalDTOById(rentalId).orElseThrow(
+                    () -> new RentalNotFondException("Rental not found with id:{%s}".formatted(rentalId))));
+            eventPublisher.publishEvent(new RentalChangedEvent(result));
+            return result;
+        });
+        log.info("{} pictures added to the gallery of rental id:{}", fileNames.size(), rentalId);
+        return updated;
+    }
+
+    private List<String> storePictures(List<MultipartFile> pictures) throws IOException {
+        List<CompletableFuture<String>> stored = pictures.stream()
+                .map(picture -> CompletableFuture.supplyAsync(() -> storePicture(picture), executor))
+                .toList();
+        try {
+            CompletableFuture.allOf(stored.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            // the pictures already stored are kept, they may be shared with other rentals
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException ioException) {
+                throw ioException.getCause();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+        return stored.stream().map(CompletableFuture::join).toList();
+    }
+
+    private String storePicture(MultipartFile picture) {
+        try {
+            return imageStorageService.savePicture(picture);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private User getAuthenticatedUser() {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByEmail(email).orElseThrow(() -> new UsernameNotFoundException("User not found in DB!!"));
+    }
+}
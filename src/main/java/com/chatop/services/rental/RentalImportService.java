@@ -0,0 +1,14 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface RentalImportService {
+
+    String NDJSON = "application/x-ndjson";
+    String CSV = "text/csv";
+
+    RentalImportReport importRentals(InputStream body, String contentType) throws IOException;
+}
@@ -0,0 +1,227 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalImportReport;
+import com.chatop.dtos.RentalImportResult;
+import com.chatop.dtos.RentalImportRow;
+import com.chatop.exceptions.FiledNotNullOrEmptyException;
+import com.chatop.exceptions.InvalidLocationException;
+import com.chatop.models.Rental;
+import com.chatop.models.User;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.repositories.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams NDJSON or CSV rows from the request body and inserts them in chunks of {@code rental-import.chunk-size},
+ * one transaction and one JDBC batch per chunk. Invalid rows are reported and skipped, the others still get imported.
+ */
+@Service
+@Slf4j
+public class RentalImportServiceImpl implements RentalImportService {
+
+    private final RentalRepository rentalRepository;
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Value("${rental-import.chunk-size:500}")
+    private int chunkSize;
+
+    public RentalImportServiceImpl(RentalRepository rentalRepository, UserRepository userRepository, EntityManager entityManager,
+                                   PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                                   ObjectMapper objectMapper) {
+        this.rentalRepository = rentalRepository;
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public RentalImportReport importRentals(InputStream body, String contentType) throws IOException {
+        String ownerEmail = SecurityContextHolder.getContext().getAuthentication().getName();
+        User owner = userRepository.findByEmail(ownerEmail).orElseThrow(() -> new UsernameNotFoundException("User not found in DB!!"));
+        boolean csv = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(CSV));
+
+        List<RentalImportResult> results = new ArrayList<>();
+        List<ParsedRow> chunk = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String[] header = null;
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = parseCsvLine(line);
+                    continue;
+                }
+                try {
+                    RentalImportRow row = csv ? fromCsv(header, parseCsvLine(line)) : objectMapper.readValue(line, RentalImportRow.class);
+                    validate(row);
+                    chunk.add(new ParsedRow(lineNumber, row));
+                } catch (JsonProcessingException e) {
+                    results.add(new RentalImportResult(lineNumber, RentalImportResult.FAILED, null, "Malformed JSON: " + e.getOriginalMessage()));
+                } catch (NumberFormatException e) {
+                    results.add(new RentalImportResult(lineNumber, RentalImportResult.FAILED, null, "Malformed number: " + e.getMessage()));
+                } catch (FiledNotNullOrEmptyException | InvalidLocationException e) {
+                    results.add(new RentalImportResult(lineNumber, RentalImportResult.FAILED, null, e.getMessage()));
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    results.addAll(saveChunk(chunk, owner.getId()));
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(saveChunk(chunk, owner.getId()));
+        }
+
+        results.sort(Comparator.comparingLong(RentalImportResult::line));
+        int imported = (int) results.stream().filter(result -> RentalImportResult.IMPORTED.equals(result.status())).count();
+        log.info("Rental import done: {} imported, {} failed", imported, results.size() - imported);
+        return new RentalImportReport(imported, results.size() - imported, results);
+    }
+
+    private List<RentalImportResult> saveChunk(List<ParsedRow> chunk, Integer ownerId) {
+        try {
+            return transactionTemplate.execute(status -> {
+                User owner = entityManager.getReference(User.class, ownerId);
+                LocalDateTime now = LocalDateTime.now();
+                List<Rental> rentals = chunk.stream().map(row -> toRental(row.row(), owner, now)).toList();
+
+                rentalRepository.saveAll(rentals);
+                entityManager.flush();
+
+                List<RentalImportResult> results = new ArrayList<>(chunk.size());
+                for (int i = 0; i < rentals.size(); i++) {
+                    Rental rental = rentals.get(i);
+                    eventPublisher.publishEvent(new RentalChangedEvent(RentalServiceImpl.buildRentalDTOFromRental(rental)));
+                    results.add(new RentalImportResult(chunk.get(i).line(), RentalImportResult.IMPORTED, rental.getId(), null));
+                }
+                // the chunk is written, keep the persistence context from growing with the import
+                entityManager.clear();
+                return results;
+            });
+        } catch (DataAccessException | PersistenceException e) {
+            log.error("Rental import chunk of {} rows rejected by the database", chunk.size(), e);
+            return chunk.stream()
+                    .map(row -> new RentalImportResult(row.line(), RentalImportResult.FAILED, null, "Rejected by the database"))
+                    .toList();
+        }
+    }
+
+    private static void validate(RentalImportRow row) {
+        if (row.name() == null || row.name().isBlank() ||
+                row.description() == null || row.description().isBlank() ||
+                row.surface() == null || row.surface() <= 0 ||
+                row.price() == null || row.price() <= 0) {
+            throw new FiledNotNullOrEmptyException("Fields cannot be null or empty");
+        }
+        RentalServiceImpl.checkLocation(row.latitude(), row.longitude());
+    }
+
+    private static Rental toRental(RentalImportRow row, User owner, LocalDateTime now) {
+        return Rental.builder()
+                .name(row.name())
+                .surface(row.surface())
+                .price(row.price())
+                .picture(row.picture())
+                .description(row.description())
+                .latitude(row.latitude())
+                .longitude(row.longitude())
+                .owner(owner)
+                .updatedAt(now)
+                .createdAt(now)
+                .build();
+    }
+
+    private static RentalImportRow fromCsv(String[] header, String[] fields) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < header.length && i < fields.length; i++) {
+            values.put(header[i].trim().toLowerCase(Locale.ROOT), fields[i].trim());
+        }
+        return new RentalImportRow(
+                values.get("name"),
+                toDouble(values.get("surface")),
+                toDouble(values.get("price")),
+                values.get("description"),
+                emptyToNull(values.get("picture")),
+                toDouble(values.get("latitude")),
+                toDouble(values.get("longitude")));
+    }
+
+    /**
+     * Splits one CSV line on commas, honouring double-quoted fields and doubled quotes inside them.
+     */
+    static String[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char current = line.charAt(i);
+            if (quoted) {
+                if (current == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (current == '"') {
+                    quoted = false;
+                } else {
+                    field.append(current);
+                }
+            } else if (current == '"') {
+                quoted = true;
+            } else if (current == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(current);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(String[]::new);
+    }
+
+    private static Double toDouble(String value) {
+        return value == null || value.isEmpty() ? null : Double.valueOf(value);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private record ParsedRow(long line, RentalImportRow row) {
+    }
+}
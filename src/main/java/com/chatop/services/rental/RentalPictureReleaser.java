@@ -0,0 +1,60 @@
+package com.chatop.services.rental;
+
+import com.chatop.repositories.RentalPictureRepository;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.services.image_storage.ImageStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Deletes the previous picture of a rental once the replacement is committed, when neither a rental nor a gallery
+ * references its file anymore, whatever the host of the URL. A picture stored or handed out again within {@code image-gc.grace-period} may be
+ * about to be referenced by another rental, it is left to {@code OrphanedImageCollector}.
+ */
+@Component
+@Slf4j
+public class RentalPictureReleaser {
+
+    private final RentalRepository rentalRepository;
+    private final RentalPictureRepository rentalPictureRepository;
+    private final ImageStorageService imageStorageService;
+    private final Duration gracePeriod;
+
+    @Value("${image-url}")
+    private String imageUrl;
+
+    public RentalPictureReleaser(RentalRepository rentalRepository, RentalPictureRepository rentalPictureRepository,
+                                 ImageStorageService imageStorageService,
+                                 @Value("${image-gc.grace-period:PT48H}") Duration gracePeriod) {
+        this.rentalRepository = rentalRepository;
+        this.rentalPictureRepository = rentalPictureRepository;
+        this.imageStorageService = imageStorageService;
+        this.gracePeriod = gracePeriod;
+    }
+
+    @TransactionalEventListener
+    public void onPictureReplaced(RentalPictureReplacedEvent event) {
+        String picture = event.picture();
+        if (!picture.startsWith(imageUrl)) {
+            return;
+        }
+        String fileName = picture.substring(imageUrl.length());
+        try {
+            // matched on the file name, a URL stored under another host references the same file
+            boolean released = imageStorageService.releasePicture(fileName, System.currentTimeMillis() - gracePeriod.toMillis(),
+                    () -> !rentalRepository.existsByPictureContaining(fileName)
+                            && !rentalPictureRepository.existsByPictureContaining(fileName));
+            if (released) {
+                log.info("Replaced picture {} released", fileName);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the orphan collector deletes it later
+            log.warn("Replaced picture {} could not be released", fileName, e);
+        }
+    }
+}
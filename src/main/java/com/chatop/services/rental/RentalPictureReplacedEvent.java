@@ -0,0 +1,7 @@
+package com.chatop.services.rental;
+
+/**
+ * Published by {@link RentalServiceImpl} when a rental's picture is replaced, carrying the URL of the previous one.
+ */
+public record RentalPictureReplacedEvent(String picture) {
+}
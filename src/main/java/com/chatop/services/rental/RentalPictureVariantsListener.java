@@ -0,0 +1,73 @@
+package com.chatop.services.rental;
+
+import com.chatop.repositories.RentalPictureRepository;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.services.image_storage.PictureVariantsGeneratedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the generated variants on the rentals and gallery pictures using the picture. A row inserted before the
+ * variants were written is updated here, one inserted after picks them up itself in {@code RentalServiceImpl.createRental}
+ * and {@code RentalGalleryServiceImpl.addPictures}.
+ * <p>
+ * Recording the variants is not an edit of the rental: its version, the one a PATCH must send back, is kept and only
+ * {@code updated_at} moves, so that the cached responses are revalidated. The listeners of the republished
+ * {@link RentalChangedEvent} order it after the change that inserted the picture by this {@code updated_at}.
+ */
+@Component
+@Slf4j
+public class RentalPictureVariantsListener {
+
+    private final RentalRepository rentalRepository;
+    private final RentalPictureRepository rentalPictureRepository;
+    private final RentalGalleryLoader rentalGalleryLoader;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${image-url}")
+    private String imageUrl;
+
+    public RentalPictureVariantsListener(RentalRepository rentalRepository, RentalPictureRepository rentalPictureRepository,
+                                         RentalGalleryLoader rentalGalleryLoader, ApplicationEventPublisher eventPublisher) {
+        this.rentalRepository = rentalRepository;
+        this.rentalPictureRepository = rentalPictureRepository;
+        this.rentalGalleryLoader = rentalGalleryLoader;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @EventListener
+    @Transactional
+    public void onPictureVariantsGenerated(PictureVariantsGeneratedEvent event) {
+        String picture = imageUrl + event.pictureFileName();
+        Map<String, String> variants = RentalServiceImpl.toPictureUrls(imageUrl, event.variantFileNames());
+        LocalDateTime now = LocalDateTime.now();
+
+        Set<Integer> rentalIds = new LinkedHashSet<>();
+        if (rentalRepository.updatePictureVariants(picture, variants, now) > 0) {
+            rentalIds.addAll(rentalRepository.findIdsByPicture(picture));
+        }
+        List<Integer> galleryRentalIds = rentalPictureRepository.findRentalIdsByPicture(picture);
+        if (!galleryRentalIds.isEmpty()) {
+            rentalPictureRepository.updatePictureVariants(picture, variants);
+            rentalRepository.refreshUpdatedAt(galleryRentalIds, now);
+            rentalIds.addAll(galleryRentalIds);
+        }
+        if (rentalIds.isEmpty()) {
+            return;
+        }
+
+        rentalGalleryLoader.withGalleries(rentalRepository.findRentalDTOsByIdIn(rentalIds))
+                .forEach(rental -> eventPublisher.publishEvent(new RentalChangedEvent(rental)));
+        log.info("Picture variants recorded on {} rentals", rentalIds.size());
+    }
+}
@@ -3,12 +3,19 @@ package com.chatop.services.rental;
 import com.chatop.dtos.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 public interface RentalService {
 
     RentalsResponse retrieveAllRentals();
+    RentalsVersion retrieveRentalsVersion();
+    RentalsPageResponse retrieveRentalsPage(String cursor, Integer limit);
+    RentalsPageResponse retrieveOwnerRentalsPage(Integer ownerId, String cursor, Integer limit);
+    RentalsPageResponse retrieveMyRentalsPage(String cursor, Integer limit);
+    void streamAllRentals(OutputStream outputStream) throws IOException;
     RentalDTO retrieveRentalById(Integer id);
     MessageResponse updateRental(Integer id, RentalRequest rentalRequest);
+    RentalDTO patchRental(Integer id, RentalPatchRequest rentalPatchRequest);
 
     MessageResponse createRental(RentalRequest rentalRequest) throws IOException;
 }
@@ -1,64 +1,200 @@
 package com.chatop.services.rental;
 
 import com.chatop.dtos.*;
+import com.chatop.exceptions.FiledNotNullOrEmptyException;
+import com.chatop.exceptions.InvalidLocationException;
 import com.chatop.exceptions.RentalNotFondException;
+import com.chatop.exceptions.RentalVersionConflictException;
+import com.chatop.exceptions.UserNotFoundException;
 import com.chatop.models.Rental;
 import com.chatop.models.User;
 import com.chatop.repositories.RentalRepository;
 import com.chatop.repositories.UserRepository;
 import com.chatop.services.image_storage.ImageStorageService;
+import com.chatop.services.image_storage.ImageVariantService;
+import com.chatop.services.pagination.KeysetCursor;
+import com.chatop.services.pagination.RentalCursor;
+import com.chatop.services.upload.ChunkedUploadService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 @Transactional
 public class RentalServiceImpl implements RentalService {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final RentalRepository rentalRepository;
     private final UserRepository userRepository;
     private final ImageStorageService imageStorageService;
+    private final ImageVariantService imageVariantService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final ObjectWriter rentalDTOWriter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final RentalGalleryLoader rentalGalleryLoader;
 
     @Value("${image-url}")
     private String imageUrl;
 
 
-    public RentalServiceImpl(RentalRepository rentalRepository, UserRepository userRepository, ImageStorageService imageStorageService) {
+    public RentalServiceImpl(RentalRepository rentalRepository, UserRepository userRepository, ImageStorageService imageStorageService,
+                             ImageVariantService imageVariantService, ChunkedUploadService chunkedUploadService, RentalGalleryLoader rentalGalleryLoader, ObjectMapper objectMapper,
+                             ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
         this.rentalRepository = rentalRepository;
         this.userRepository = userRepository;
         this.imageStorageService = imageStorageService;
+        this.imageVariantService = imageVariantService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.rentalGalleryLoader = rentalGalleryLoader;
+        this.rentalDTOWriter = objectMapper.writerFor(RentalDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public RentalsResponse retrieveAllRentals() {
-        List<Rental> rentals = rentalRepository.findAll();
+        final List<RentalDTO> rentalDTOS = rentalGalleryLoader.withGalleries(rentalRepository.findAllRentalDTOs());
 
-        if(rentals.isEmpty()) {
+        if(rentalDTOS.isEmpty()) {
             throw new RentalNotFondException("Rentals not found");
         }
 
-        final List<RentalDTO> rentalDTOS = fromRentalToRentalDTOList(rentals);
-
         RentalsResponse rentalsResponse = new RentalsResponse(rentalDTOS);
         log.info("Rentals retrieved successfully");
         return rentalsResponse;
     }
 
     @Override
-    public RentalDTO retrieveRentalById(Integer id) {
-        Rental rental = rentalRepository.findById(id).orElseThrow(
-                () -> new RentalNotFondException("Rental not found with id:{%s}".formatted(id)));
+    @Transactional(readOnly = true)
+    public RentalsVersion retrieveRentalsVersion() {
+        return rentalRepository.findRentalsVersion();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RentalsPageResponse retrieveRentalsPage(String cursor, Integer limit) {
+        int pageSize = KeysetCursor.clampLimit(limit, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+
+        List<RentalDTO> rentals;
+        if (cursor == null || cursor.isBlank()) {
+            rentals = rentalRepository.findFirstPage(pageRequest);
+        } else {
+            RentalCursor after = RentalCursor.decode(cursor);
+            rentals = rentalRepository.findPageAfter(after.createdAt(), after.id(), pageRequest);
+        }
+
+        RentalsPageResponse page = toPage(rentals, pageSize);
+        log.info("Rentals page retrieved successfully with {} rentals", page.rentals().size());
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RentalsPageResponse retrieveOwnerRentalsPage(Integer ownerId, String cursor, Integer limit) {
+        if (!userRepository.existsById(ownerId)) {
+            throw new UserNotFoundException("User not found with this id:{%d}".formatted(ownerId));
+        }
+        return findOwnerRentalsPage(ownerId, cursor, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RentalsPageResponse retrieveMyRentalsPage(String cursor, Integer limit) {
+        return findOwnerRentalsPage(getAuthenticatedUser().getId(), cursor, limit);
+    }
+
+    private RentalsPageResponse findOwnerRentalsPage(Integer ownerId, String cursor, Integer limit) {
+        int pageSize = KeysetCursor.clampLimit(limit, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+
+        List<RentalDTO> rentals;
+        if (cursor == null || cursor.isBlank()) {
+            rentals = rentalRepository.findOwnerFirstPage(ownerId, pageRequest);
+        } else {
+            RentalCursor after = RentalCursor.decode(cursor);
+            rentals = rentalRepository.findOwnerPageAfter(ownerId, after.createdAt(), after.id(), pageRequest);
+        }
+
+        RentalsPageResponse page = toPage(rentals, pageSize);
+        log.info("Rentals page of owner id:{} retrieved successfully with {} rentals", ownerId, page.rentals().size());
+        return page;
+    }
+
+    private RentalsPageResponse toPage(List<RentalDTO> rentals, int pageSize) {
+        if (rentals.size() <= pageSize) {
+            return new RentalsPageResponse(rentalGalleryLoader.withGalleries(rentals), null);
+        }
+        List<RentalDTO> page = rentalGalleryLoader.withGalleries(rentals.subList(0, pageSize));
+        RentalDTO last = page.get(pageSize - 1);
+        return new RentalsPageResponse(page, new RentalCursor(last.created_at(), last.id()).encode());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllRentals(OutputStream outputStream) throws IOException {
+        long count = 0;
+        try (Stream<RentalDTO> rentals = rentalRepository.streamAllRentalDTOs();
+             JsonGenerator generator = rentalDTOWriter.getFactory().createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("rentals");
+
+            // the galleries are read for each batch of streamed rentals, not for each rental; the server-side cursor
+            // (useCursorFetch) lets these queries run while the stream is still open
+            List<RentalDTO> batch = new ArrayList<>(RentalGalleryLoader.BATCH_SIZE);
+            Iterator<RentalDTO> iterator = rentals.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == RentalGalleryLoader.BATCH_SIZE || !iterator.hasNext()) {
+                    for (RentalDTO rental : rentalGalleryLoader.withGalleries(batch)) {
+                        rentalDTOWriter.writeValue(generator, rental);
+                    }
+                    count += batch.size();
+                    batch.clear();
+                }
+            }
 
-        final RentalDTO rentalDTO = buildRentalDTOFromRental(rental);
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        log.info("Rentals streamed successfully, {} rentals written", count);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = RentalCacheListener.RENTALS_CACHE, key = "#id")
+    public RentalDTO retrieveRentalById(Integer id) {
+        final RentalDTO rentalDTO = rentalGalleryLoader.withGallery(rentalRepository.findRentalDTOById(id).orElseThrow(
+                () -> new RentalNotFondException("Rental not found with id:{%s}".formatted(id))));
 
         log.info("Rental retrieved successfully with id:{%s}".formatted(id));
         return rentalDTO;
@@ -66,60 +202,146 @@ public class RentalServiceImpl implements RentalService {
 
     @Override
     public MessageResponse updateRental(Integer id, RentalRequest rentalRequest) {
+        checkLocation(rentalRequest.getLatitude(), rentalRequest.getLongitude());
         Rental rental = rentalRepository.findById(id).orElseThrow(
                 () -> new RentalNotFondException("Rental not found with id:{%s}".formatted(id)));
 
         setRental(rentalRequest, rental);
+        if (rentalRequest.getUploadId() != null) {
+            // the chunked upload was stored on commit, only its file name is looked up here
+            String pictureFileName = chunkedUploadService.retrieveCommittedPicture(rentalRequest.getUploadId());
+            Map<String, String> variants = imageVariantService.findReadyVariants(pictureFileName);
+            String previousPicture = rental.getPicture();
+            rental.setPicture(imageUrl + pictureFileName);
+            rental.setPictureVariants(variants.isEmpty() ? null : toPictureUrls(imageUrl, variants));
+            if (previousPicture != null && !previousPicture.equals(rental.getPicture())) {
+                eventPublisher.publishEvent(new RentalPictureReplacedEvent(previousPicture));
+            }
+        }
 
-        rentalRepository.save(rental);
+        // flushed here so that the published DTO carries the incremented version
+        rentalRepository.saveAndFlush(rental);
+        eventPublisher.publishEvent(new RentalChangedEvent(rentalGalleryLoader.withGallery(buildRentalDTOFromRental(rental))));
         log.info("Rental updated successfully with id:{%s}".formatted(id));
         return new MessageResponse("Rental updated !");
     }
 
     @Override
+    public RentalDTO patchRental(Integer id, RentalPatchRequest rentalPatchRequest) {
+        checkPatch(rentalPatchRequest);
+
+        int updated = rentalRepository.patchRental(id, rentalPatchRequest.getVersion(), rentalPatchRequest, LocalDateTime.now());
+        if (updated == 0) {
+            if (!rentalRepository.existsById(id)) {
+                throw new RentalNotFondException("Rental not found with id:{%s}".formatted(id));
+            }
+            log.error("Rental with id:{} is no longer at version {}", id, rentalPatchRequest.getVersion());
+            throw new RentalVersionConflictException("Rental with id:{%s} was modified concurrently, reload it and retry".formatted(id));
+        }
+
+        // the listeners need the whole row, read back as a projection in the same transaction
+        RentalDTO rental = rentalGalleryLoader.withGallery(rentalRepository.findRentalDTOById(id).orElseThrow(
+                () -> new RentalNotFondException("Rental not found with id:{%s}".formatted(id))));
+        eventPublisher.publishEvent(new RentalChangedEvent(rental));
+        log.info("Rental patched successfully with id:{%s}".formatted(id));
+        return rental;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public MessageResponse createRental(RentalRequest rentalRequest) throws IOException {
+        checkLocation(rentalRequest.getLatitude(), rentalRequest.getLongitude());
 
-        String pictureLocation = imageUrl + imageStorageService.savePicture(rentalRequest.getPicture());
+        // the upload is written before the transaction starts, no connection is held during the file work.
+        // It is not deleted if the insert fails: an identical upload in flight may already share the stored file
+        String pictureFileName = rentalRequest.getUploadId() != null
+                ? chunkedUploadService.retrieveCommittedPicture(rentalRequest.getUploadId())
+                : imageStorageService.savePicture(rentalRequest.getPicture());
+        String pictureLocation = imageUrl + pictureFileName;
 
         final RentalRequestDTO rentalRequestDTO = getRentalRequestDTO(rentalRequest, pictureLocation);
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        transactionTemplate.executeWithoutResult(status -> {
+            User authUser = getAuthenticatedUser();
 
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        User authUser = userRepository.findByEmail(userDetails.getUsername()).orElseThrow(() -> new UsernameNotFoundException("User not found in DB!!"));
+            final Rental rentalSaved = toRental(rentalRequestDTO, authUser);
 
-        final Rental rentalSaved = toRental(rentalRequestDTO, authUser);
+            rentalRepository.saveAndFlush(rentalSaved);
 
-        rentalRepository.save(rentalSaved);
+            // variants written before the insert was flushed were missed by RentalPictureVariantsListener
+            Map<String, String> variants = imageVariantService.findReadyVariants(pictureFileName);
+            if (!variants.isEmpty()) {
+                rentalSaved.setPictureVariants(toPictureUrls(imageUrl, variants));
+                rentalRepository.saveAndFlush(rentalSaved);
+            }
+            eventPublisher.publishEvent(new RentalChangedEvent(buildRentalDTOFromRental(rentalSaved)));
+        });
         log.info("Rental created successfully");
         return new MessageResponse("Rental created !");
     }
 
-    private static RentalDTO buildRentalDTOFromRental(Rental rental) {
+    private User getAuthenticatedUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        return userRepository.findByEmail(userDetails.getUsername()).orElseThrow(() -> new UsernameNotFoundException("User not found in DB!!"));
+    }
+
+    static RentalDTO buildRentalDTOFromRental(Rental rental) {
         return new RentalDTO(
                 rental.getId(),
                 rental.getName(),
                 rental.getSurface(),
                 rental.getPrice(),
                 rental.getPicture(),
+                rental.getPictureVariants(),
                 rental.getDescription(),
+                rental.getLatitude(),
+                rental.getLongitude(),
                 rental.getOwner().getId(),
                 rental.getCreatedAt(),
-                rental.getUpdatedAt());
+                rental.getUpdatedAt(),
+                rental.getVersion());
     }
 
-    private static List<RentalDTO> fromRentalToRentalDTOList(List<Rental> rentals) {
-        return rentals.stream().map(rental ->
-                new RentalDTO(
-                        rental.getId(),
-                        rental.getName(),
-                        rental.getSurface(),
-                        rental.getPrice(),
-                        rental.getPicture(),
-                        rental.getDescription(),
-                        rental.getOwner().getId(),
-                        rental.getCreatedAt(),
-                        rental.getUpdatedAt())).toList();
+    static Map<String, String> toPictureUrls(String imageUrl, Map<String, String> fileNames) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        fileNames.forEach((width, fileName) -> urls.put(width, imageUrl + fileName));
+        return urls;
+    }
+
+    static void checkLocation(Double latitude, Double longitude) {
+        if (latitude == null && longitude == null) {
+            return;
+        }
+        if (latitude == null || longitude == null) {
+            log.error("Latitude and longitude should be given together");
+            throw new InvalidLocationException("Latitude and longitude should be given together");
+        }
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            log.error("Location out of range");
+            throw new InvalidLocationException("Latitude should be within [-90, 90] and longitude within [-180, 180]");
+        }
+    }
+
+    private static void checkPatch(RentalPatchRequest patch) {
+        if (patch.getVersion() == null) {
+            log.error("Version is missing from the patch");
+            throw new FiledNotNullOrEmptyException("Version cannot be null");
+        }
+        if (patch.getName() == null && patch.getSurface() == null && patch.getPrice() == null &&
+                patch.getDescription() == null && patch.getLatitude() == null && patch.getLongitude() == null) {
+            log.error("Patch without any field");
+            throw new FiledNotNullOrEmptyException("At least one field should be given");
+        }
+        if ((patch.getName() != null && patch.getName().isBlank()) ||
+                (patch.getDescription() != null && patch.getDescription().isBlank()) ||
+                (patch.getSurface() != null && patch.getSurface() <= 0) ||
+                (patch.getPrice() != null && patch.getPrice() <= 0)) {
+            log.error("Patch with empty fields");
+            throw new FiledNotNullOrEmptyException("Fields cannot be null or empty");
+        }
+        checkLocation(patch.getLatitude(), patch.getLongitude());
     }
 
     private static void setRental(RentalRequest rentalRequest, Rental rental) {
@@ -127,6 +349,11 @@ public class RentalServiceImpl implements RentalService {
         rental.setSurface(rentalRequest.getSurface());
         rental.setPrice(rentalRequest.getPrice());
         rental.setDescription(rentalRequest.getDescription());
+        // checkLocation lets both through or neither: a form sent without coordinates keeps the current ones
+        if (rentalRequest.getLatitude() != null) {
+            rental.setLatitude(rentalRequest.getLatitude());
+            rental.setLongitude(rentalRequest.getLongitude());
+        }
         rental.setUpdatedAt(LocalDateTime.now());
     }
 
@@ -137,6 +364,8 @@ public class RentalServiceImpl implements RentalService {
                 .price(rentalRequestDTO.getPrice())
                 .picture(rentalRequestDTO.getPicture())
                 .description(rentalRequestDTO.getDescription())
+                .latitude(rentalRequestDTO.getLatitude())
+                .longitude(rentalRequestDTO.getLongitude())
                 .owner(authUser)
                 .updatedAt(LocalDateTime.now())
                 .createdAt(LocalDateTime.now())
@@ -150,6 +379,8 @@ public class RentalServiceImpl implements RentalService {
                 .price(rentalRequest.getPrice())
                 .picture(pictureLocation)
                 .description(rentalRequest.getDescription())
+                .latitude(rentalRequest.getLatitude())
+                .longitude(rentalRequest.getLongitude())
                 .build();
         rentalRequestDTO.setPicture(pictureLocation);
         return rentalRequestDTO;
@@ -0,0 +1,108 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.services.rental.RentalChangedEvent;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Base class of the in-memory rental indexes: filled once by {@link RentalIndexLoader} at startup, then kept in sync
+ * with the {@link RentalChangedEvent}s committed by the rental service.
+ * Changes committed while the initial load is running are buffered and applied after it, so they win over the rows read.
+ * The version applied for each rental is kept, a change older than it is skipped whether it arrives during the load
+ * or after.
+ */
+public abstract class AbstractRentalIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<RentalChangedEvent> pendingChanges = new ArrayList<>();
+    private final Map<Integer, Long> versions = new HashMap<>();
+    private volatile boolean loaded;
+
+    protected abstract void apply(RentalDTO rental);
+
+    /**
+     * Called for each row of the initial load, applied one by one by default. An index whose {@link #apply} is costly
+     * per row collects them instead and builds its structures once in {@link #finishBulkLoad()}.
+     */
+    protected void bulkLoad(RentalDTO rental) {
+        apply(rental);
+    }
+
+    /**
+     * Called once, under the write lock, after the last row of the initial load and before the buffered changes.
+     */
+    protected void finishBulkLoad() {
+    }
+
+    /**
+     * Called once, under the write lock, when the initial load and the changes buffered during it have been applied.
+     */
+    protected void afterLoad() {
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    void loadRental(RentalDTO rental) {
+        write(() -> {
+            versions.put(rental.id(), rental.version());
+            bulkLoad(rental);
+        });
+    }
+
+    void finishLoad() {
+        write(() -> {
+            finishBulkLoad();
+            pendingChanges.forEach(this::applyIfNewer);
+            pendingChanges.clear();
+            loaded = true;
+            afterLoad();
+        });
+    }
+
+    @TransactionalEventListener
+    public void onRentalChanged(RentalChangedEvent event) {
+        write(() -> {
+            if (loaded) {
+                applyIfNewer(event);
+            } else {
+                pendingChanges.add(event);
+            }
+        });
+    }
+
+    private void applyIfNewer(RentalChangedEvent event) {
+        RentalDTO rental = event.rental();
+        if (event.isStale(versions.get(rental.id()))) {
+            return;
+        }
+        versions.put(rental.id(), rental.version());
+        apply(rental);
+    }
+
+    protected <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
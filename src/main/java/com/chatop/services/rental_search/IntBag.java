@@ -0,0 +1,40 @@
+package com.chatop.services.rental_search;
+
+import java.util.Arrays;
+
+/**
+ * Unordered growable set of ints, removal swaps the last element in.
+ */
+final class IntBag {
+
+    private int[] values = new int[4];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    void remove(int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                values[i] = values[--size];
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,132 @@
+package com.chatop.services.rental_search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted (rental id, term frequency) postings of one term, stored as variable-length encoded id deltas.
+ * Appending an id greater than the last one is O(1); other changes re-encode the list.
+ */
+final class PostingList {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int documentCount;
+    private int lastId = -1;
+
+    int documentCount() {
+        return documentCount;
+    }
+
+    boolean isEmpty() {
+        return documentCount == 0;
+    }
+
+    void add(int id, int frequency) {
+        if (id > lastId) {
+            append(id, frequency);
+            return;
+        }
+        int[] ids = new int[documentCount + 1];
+        int[] frequencies = new int[documentCount + 1];
+        int count = 0;
+        boolean inserted = false;
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            if (!inserted && cursor.id() >= id) {
+                ids[count] = id;
+                frequencies[count++] = frequency;
+                inserted = true;
+                if (cursor.id() == id) {
+                    continue;
+                }
+            }
+            ids[count] = cursor.id();
+            frequencies[count++] = cursor.frequency();
+        }
+        rewrite(ids, frequencies, count);
+    }
+
+    void remove(int id) {
+        int[] ids = new int[documentCount];
+        int[] frequencies = new int[documentCount];
+        int count = 0;
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            if (cursor.id() != id) {
+                ids[count] = cursor.id();
+                frequencies[count++] = cursor.frequency();
+            }
+        }
+        if (count != documentCount) {
+            rewrite(ids, frequencies, count);
+        }
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    private void rewrite(int[] ids, int[] frequencies, int count) {
+        data = new byte[Math.max(8, count * 3)];
+        length = 0;
+        documentCount = 0;
+        lastId = -1;
+        for (int i = 0; i < count; i++) {
+            append(ids[i], frequencies[i]);
+        }
+    }
+
+    private void append(int id, int frequency) {
+        writeVarInt(lastId < 0 ? id : id - lastId);
+        writeVarInt(frequency);
+        lastId = id;
+        documentCount++;
+    }
+
+    private void writeVarInt(int value) {
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        }
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    final class Cursor {
+
+        private int position;
+        private int id;
+        private int frequency;
+
+        boolean next() {
+            if (position >= length) {
+                return false;
+            }
+            id += readVarInt();
+            frequency = readVarInt();
+            return true;
+        }
+
+        int id() {
+            return id;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = data[position++];
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return value;
+        }
+    }
+}
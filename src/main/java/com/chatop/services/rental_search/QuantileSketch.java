@@ -0,0 +1,79 @@
+package com.chatop.services.rental_search;
+
+import java.util.Arrays;
+
+/**
+ * Log-bucketed quantile sketch (DDSketch style) over positive values: every estimate is within {@code relativeAccuracy}
+ * of a true quantile, the memory only depends on the range of the values, and values can be removed as well as added.
+ */
+final class QuantileSketch {
+
+    private final double gamma;
+    private final double logGamma;
+    private long[] counts = new long[0];
+    private int minIndex;
+    private long zeroCount;
+    private long total;
+
+    QuantileSketch(double relativeAccuracy) {
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    long total() {
+        return total;
+    }
+
+    void add(double value) {
+        update(value, 1);
+    }
+
+    void remove(double value) {
+        update(value, -1);
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the estimated value at the quantile, or {@code null} when the sketch is empty
+     */
+    Double quantile(double quantile) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = (long) Math.floor(quantile * (total - 1));
+        if (rank < zeroCount) {
+            return 0d;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return 2 * Math.pow(gamma, minIndex + i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, minIndex + counts.length - 1) / (gamma + 1);
+    }
+
+    private void update(double value, int delta) {
+        total += delta;
+        if (value <= 0 || Double.isNaN(value)) {
+            zeroCount += delta;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        if (counts.length == 0) {
+            counts = new long[16];
+            minIndex = index - 8;
+        }
+        if (index < minIndex) {
+            int shift = minIndex - index + 8;
+            long[] grown = new long[counts.length + shift];
+            System.arraycopy(counts, 0, grown, shift, counts.length);
+            counts = grown;
+            minIndex -= shift;
+        } else if (index >= minIndex + counts.length) {
+            counts = Arrays.copyOf(counts, index - minIndex + 8);
+        }
+        counts[index - minIndex] += delta;
+    }
+}
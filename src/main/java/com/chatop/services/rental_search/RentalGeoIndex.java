@@ -0,0 +1,168 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Uniform grid of {@value #CELL_DEGREES} degree cells (about 11 km of latitude) over the located rentals.
+ * A box query visits the cells it overlaps, or every occupied cell when that is fewer, and checks the exact coordinates
+ * kept in dense id-indexed arrays.
+ */
+@Component
+public class RentalGeoIndex extends AbstractRentalIndex {
+
+    private static final double CELL_DEGREES = 0.1;
+    private static final int LONGITUDE_CELLS = (int) Math.ceil(360 / CELL_DEGREES) + 1;
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private final Map<Long, IntBag> cells = new HashMap<>();
+    private double[] latitudeById = new double[0];
+    private double[] longitudeById = new double[0];
+
+    @Override
+    protected void apply(RentalDTO rental) {
+        int id = rental.id();
+        ensureCapacity(id);
+        if (!Double.isNaN(latitudeById[id])) {
+            long previousCell = cell(latitudeById[id], longitudeById[id]);
+            IntBag bag = cells.get(previousCell);
+            bag.remove(id);
+            if (bag.size() == 0) {
+                cells.remove(previousCell);
+            }
+            latitudeById[id] = Double.NaN;
+            longitudeById[id] = Double.NaN;
+        }
+        if (rental.latitude() == null || rental.longitude() == null) {
+            return;
+        }
+        latitudeById[id] = rental.latitude();
+        longitudeById[id] = rental.longitude();
+        cells.computeIfAbsent(cell(rental.latitude(), rental.longitude()), key -> new IntBag()).add(id);
+    }
+
+    public GeoSearchResult searchBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude, int offset, int limit) {
+        return read(() -> {
+            int[] matches = collect(minLatitude, maxLatitude, minLongitude, maxLongitude, -1, 0, 0);
+            Arrays.sort(matches);
+            return page(matches, offset, limit);
+        });
+    }
+
+    /**
+     * @return the rentals within {@code radiusKm} of the point, nearest first
+     */
+    public GeoSearchResult searchRadius(double latitude, double longitude, double radiusKm, int offset, int limit) {
+        double latitudeDelta = radiusKm / KM_PER_DEGREE;
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double longitudeDelta = cosLatitude < 1e-6 ? 180 : Math.min(180, latitudeDelta / cosLatitude);
+        return read(() -> {
+            int[] matches = collect(latitude - latitudeDelta, latitude + latitudeDelta,
+                    longitude - longitudeDelta, longitude + longitudeDelta, radiusKm, latitude, longitude);
+
+            // sort by distance without boxing: non-negative float bits keep their order as ints, the id goes in the low half
+            long[] byDistance = new long[matches.length];
+            for (int i = 0; i < matches.length; i++) {
+                float distance = (float) distanceKm(latitude, longitude, latitudeById[matches[i]], longitudeById[matches[i]]);
+                byDistance[i] = ((long) Float.floatToIntBits(distance) << 32) | matches[i];
+            }
+            Arrays.sort(byDistance);
+            for (int i = 0; i < byDistance.length; i++) {
+                matches[i] = (int) byDistance[i];
+            }
+            return page(matches, offset, limit);
+        });
+    }
+
+    private int[] collect(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                          double radiusKm, double latitude, double longitude) {
+        double fromLatitude = Math.max(-90, minLatitude);
+        double toLatitude = Math.min(90, maxLatitude);
+        double fromLongitude = Math.max(-180, minLongitude);
+        double toLongitude = Math.min(180, maxLongitude);
+
+        IntBag matches = new IntBag();
+        long firstCell = cell(fromLatitude, fromLongitude);
+        long lastCell = cell(toLatitude, toLongitude);
+        long latitudeCells = lastCell / LONGITUDE_CELLS - firstCell / LONGITUDE_CELLS + 1;
+        long longitudeCells = lastCell % LONGITUDE_CELLS - firstCell % LONGITUDE_CELLS + 1;
+
+        if (latitudeCells * longitudeCells > cells.size()) {
+            for (IntBag bag : cells.values()) {
+                filter(bag, matches, fromLatitude, toLatitude, fromLongitude, toLongitude, radiusKm, latitude, longitude);
+            }
+        } else {
+            for (long row = firstCell / LONGITUDE_CELLS; row <= lastCell / LONGITUDE_CELLS; row++) {
+                for (long column = firstCell % LONGITUDE_CELLS; column <= lastCell % LONGITUDE_CELLS; column++) {
+                    IntBag bag = cells.get(row * LONGITUDE_CELLS + column);
+                    if (bag != null) {
+                        filter(bag, matches, fromLatitude, toLatitude, fromLongitude, toLongitude, radiusKm, latitude, longitude);
+                    }
+                }
+            }
+        }
+
+        int[] ids = new int[matches.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = matches.get(i);
+        }
+        return ids;
+    }
+
+    private void filter(IntBag bag, IntBag matches, double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                        double radiusKm, double latitude, double longitude) {
+        for (int i = 0; i < bag.size(); i++) {
+            int id = bag.get(i);
+            double rentalLatitude = latitudeById[id];
+            double rentalLongitude = longitudeById[id];
+            if (rentalLatitude < minLatitude || rentalLatitude > maxLatitude || rentalLongitude < minLongitude || rentalLongitude > maxLongitude) {
+                continue;
+            }
+            if (radiusKm >= 0 && distanceKm(latitude, longitude, rentalLatitude, rentalLongitude) > radiusKm) {
+                continue;
+            }
+            matches.add(id);
+        }
+    }
+
+    private static GeoSearchResult page(int[] matches, int offset, int limit) {
+        int from = Math.min(offset, matches.length);
+        int to = Math.min(matches.length, from + limit);
+        return new GeoSearchResult(Arrays.copyOfRange(matches, from, to), matches.length);
+    }
+
+    private static long cell(double latitude, double longitude) {
+        long row = (long) Math.floor((latitude + 90) / CELL_DEGREES);
+        long column = (long) Math.floor((longitude + 180) / CELL_DEGREES);
+        return row * LONGITUDE_CELLS + column;
+    }
+
+    private static double distanceKm(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double latitudeDelta = Math.toRadians(toLatitude - fromLatitude);
+        double longitudeDelta = Math.toRadians(toLongitude - fromLongitude);
+        double haversine = Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2)
+                + Math.cos(Math.toRadians(fromLatitude)) * Math.cos(Math.toRadians(toLatitude))
+                * Math.sin(longitudeDelta / 2) * Math.sin(longitudeDelta / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(haversine)));
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < latitudeById.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, latitudeById.length * 2);
+        int previousLength = latitudeById.length;
+        latitudeById = Arrays.copyOf(latitudeById, capacity);
+        longitudeById = Arrays.copyOf(longitudeById, capacity);
+        Arrays.fill(latitudeById, previousLength, capacity, Double.NaN);
+        Arrays.fill(longitudeById, previousLength, capacity, Double.NaN);
+    }
+
+    public record GeoSearchResult(int[] ids, int total) {
+    }
+}
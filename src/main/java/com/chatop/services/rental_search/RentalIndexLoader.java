@@ -0,0 +1,48 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.repositories.RentalRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Streams the rentals table once at startup into every {@link AbstractRentalIndex}.
+ */
+@Component
+@Slf4j
+public class RentalIndexLoader {
+
+    private final RentalRepository rentalRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final List<AbstractRentalIndex> indexes;
+
+    public RentalIndexLoader(RentalRepository rentalRepository, PlatformTransactionManager transactionManager, List<AbstractRentalIndex> indexes) {
+        this.rentalRepository = rentalRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.indexes = indexes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        AtomicLong count = new AtomicLong();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<RentalDTO> rentals = rentalRepository.streamAllRentalDTOs()) {
+                rentals.forEach(rental -> {
+                    indexes.forEach(index -> index.loadRental(rental));
+                    count.incrementAndGet();
+                });
+            }
+        });
+        indexes.forEach(AbstractRentalIndex::finishLoad);
+        log.info("{} rental indexes loaded with {} rentals", indexes.size(), count.get());
+    }
+}
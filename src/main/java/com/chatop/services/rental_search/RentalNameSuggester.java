@@ -0,0 +1,319 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.dtos.RentalSuggestion;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Type-ahead over rental names: the accent-folded names are kept in a radix trie, each prefix leads to one node.
+ * Every node holding more than {@value #MAX_SUGGESTIONS} names keeps its most recently updated ones, so a keystroke
+ * costs a walk down the prefix whatever the number of matching names; smaller nodes are simply enumerated.
+ * The initial load builds the trie first and computes these top lists once, bottom-up.
+ */
+@Component
+public class RentalNameSuggester extends AbstractRentalIndex {
+
+    static final int MAX_SUGGESTIONS = 20;
+
+    private static final Comparator<Entry> MOST_RECENT_FIRST = Comparator.comparingLong(Entry::recency).reversed()
+            .thenComparing(Comparator.comparingInt(Entry::id).reversed());
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final Node root = new Node("");
+    private final Map<Integer, Entry> entryById = new HashMap<>();
+
+    @Override
+    protected void bulkLoad(RentalDTO rental) {
+        Entry entry = toEntry(rental);
+        if (entry != null) {
+            entryById.put(entry.id(), entry);
+        } else {
+            entryById.remove(rental.id());
+        }
+    }
+
+    @Override
+    protected void finishBulkLoad() {
+        for (Entry entry : entryById.values()) {
+            insert(entry, false);
+        }
+        computeTop(root);
+    }
+
+    @Override
+    protected void apply(RentalDTO rental) {
+        Entry previous = entryById.remove(rental.id());
+        if (previous != null) {
+            remove(previous);
+        }
+        Entry entry = toEntry(rental);
+        if (entry != null) {
+            entryById.put(entry.id(), entry);
+            insert(entry, true);
+        }
+    }
+
+    public List<RentalSuggestion> suggest(String prefix, int limit) {
+        String key = TextAnalyzer.fold(prefix).trim();
+        return read(() -> {
+            Node node = find(key);
+            if (node == null) {
+                return List.of();
+            }
+            List<Entry> best = node.top != null ? Arrays.asList(node.top) : sorted(collect(node, new ArrayList<>()));
+            List<RentalSuggestion> suggestions = new ArrayList<>(Math.min(limit, best.size()));
+            for (int i = 0; i < best.size() && i < limit; i++) {
+                suggestions.add(new RentalSuggestion(best.get(i).id(), best.get(i).name()));
+            }
+            return suggestions;
+        });
+    }
+
+    /**
+     * @return the node whose names all start with the key, {@code null} when no name does
+     */
+    private Node find(String key) {
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length()) {
+            Node child = child(node, key.charAt(depth));
+            if (child == null) {
+                return null;
+            }
+            int remaining = key.length() - depth;
+            if (child.edge.length() >= remaining) {
+                return child.edge.startsWith(key.substring(depth)) ? child : null;
+            }
+            if (!key.startsWith(child.edge, depth)) {
+                return null;
+            }
+            depth += child.edge.length();
+            node = child;
+        }
+        return node;
+    }
+
+    private void insert(Entry entry, boolean maintainTop) {
+        String key = entry.key();
+        Node node = root;
+        int depth = 0;
+        while (true) {
+            if (maintainTop) {
+                addToTop(node, entry);
+            }
+            node.count++;
+            if (depth == key.length()) {
+                node.entries = append(node.entries, entry);
+                return;
+            }
+            Node child = child(node, key.charAt(depth));
+            if (child == null) {
+                Node leaf = new Node(key.substring(depth));
+                leaf.count = 1;
+                leaf.entries = new Entry[]{entry};
+                node.children = append(node.children, leaf);
+                return;
+            }
+            int common = commonPrefixLength(child.edge, key, depth);
+            if (common < child.edge.length()) {
+                child = split(node, child, common);
+            }
+            depth += common;
+            node = child;
+        }
+    }
+
+    private void remove(Entry entry) {
+        String key = entry.key();
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int depth = 0;
+        while (true) {
+            path.add(node);
+            if (depth == key.length()) {
+                node.entries = without(node.entries, entry.id());
+                break;
+            }
+            node = child(node, key.charAt(depth));
+            depth += node.edge.length();
+        }
+
+        // bottom-up, so that a parent recomputing its top list sees the updated lists of its children
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node current = path.get(i);
+            current.count--;
+            if (current.count <= MAX_SUGGESTIONS) {
+                current.top = null;
+            } else if (contains(current.top, entry.id())) {
+                current.top = bestOf(current);
+            }
+            if (current.count == 0 && i > 0) {
+                path.get(i - 1).children = without(path.get(i - 1).children, current);
+            }
+        }
+    }
+
+    /**
+     * Called on the way down, before the entry is in the subtree of the node.
+     */
+    private void addToTop(Node node, Entry entry) {
+        if (node.count + 1 <= MAX_SUGGESTIONS) {
+            return;
+        }
+        if (node.top == null) {
+            List<Entry> entries = collect(node, new ArrayList<>(MAX_SUGGESTIONS + 1));
+            entries.add(entry);
+            node.top = firstOf(sorted(entries));
+            return;
+        }
+        Entry[] top = node.top;
+        if (MOST_RECENT_FIRST.compare(entry, top[top.length - 1]) >= 0) {
+            return;
+        }
+        int position = top.length - 1;
+        while (position > 0 && MOST_RECENT_FIRST.compare(entry, top[position - 1]) < 0) {
+            top[position] = top[position - 1];
+            position--;
+        }
+        top[position] = entry;
+    }
+
+    private Node split(Node parent, Node child, int length) {
+        Node middle = new Node(child.edge.substring(0, length));
+        middle.count = child.count;
+        middle.top = child.top == null ? null : child.top.clone();
+        middle.children = new Node[]{child};
+        child.edge = child.edge.substring(length);
+        for (int i = 0; i < parent.children.length; i++) {
+            if (parent.children[i] == child) {
+                parent.children[i] = middle;
+            }
+        }
+        return middle;
+    }
+
+    private List<Entry> computeTop(Node node) {
+        List<Entry> candidates = new ArrayList<>(Arrays.asList(node.entries));
+        for (Node child : node.children) {
+            candidates.addAll(computeTop(child));
+        }
+        List<Entry> best = sorted(candidates);
+        best = best.subList(0, Math.min(MAX_SUGGESTIONS, best.size()));
+        node.top = node.count > MAX_SUGGESTIONS ? best.toArray(NO_ENTRIES) : null;
+        return best;
+    }
+
+    private Entry[] bestOf(Node node) {
+        List<Entry> candidates = new ArrayList<>(Arrays.asList(node.entries));
+        for (Node child : node.children) {
+            if (child.top != null) {
+                candidates.addAll(Arrays.asList(child.top));
+            } else {
+                collect(child, candidates);
+            }
+        }
+        return firstOf(sorted(candidates));
+    }
+
+    private static List<Entry> collect(Node node, List<Entry> entries) {
+        entries.addAll(Arrays.asList(node.entries));
+        for (Node child : node.children) {
+            collect(child, entries);
+        }
+        return entries;
+    }
+
+    private static List<Entry> sorted(List<Entry> entries) {
+        entries.sort(MOST_RECENT_FIRST);
+        return entries;
+    }
+
+    private static Entry[] firstOf(List<Entry> sorted) {
+        return sorted.subList(0, Math.min(MAX_SUGGESTIONS, sorted.size())).toArray(NO_ENTRIES);
+    }
+
+    private static Node child(Node node, char first) {
+        for (Node child : node.children) {
+            if (child.edge.charAt(0) == first) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static int commonPrefixLength(String edge, String key, int depth) {
+        int length = 0;
+        while (length < edge.length() && depth + length < key.length() && edge.charAt(length) == key.charAt(depth + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static boolean contains(Entry[] entries, int id) {
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (entry.id() == id) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] appended = Arrays.copyOf(entries, entries.length + 1);
+        appended[entries.length] = entry;
+        return appended;
+    }
+
+    private static Node[] append(Node[] children, Node child) {
+        Node[] appended = Arrays.copyOf(children, children.length + 1);
+        appended[children.length] = child;
+        return appended;
+    }
+
+    private static Entry[] without(Entry[] entries, int id) {
+        return Arrays.stream(entries).filter(entry -> entry.id() != id).toArray(Entry[]::new);
+    }
+
+    private static Node[] without(Node[] children, Node child) {
+        return Arrays.stream(children).filter(candidate -> candidate != child).toArray(Node[]::new);
+    }
+
+    private static Entry toEntry(RentalDTO rental) {
+        String key = rental.name() == null ? "" : TextAnalyzer.fold(rental.name()).trim();
+        return key.isEmpty() ? null : new Entry(key, rental.id(), rental.name(), recency(rental));
+    }
+
+    private static long recency(RentalDTO rental) {
+        LocalDateTime updatedAt = rental.updated_at() != null ? rental.updated_at() : rental.created_at();
+        return updatedAt == null ? 0 : updatedAt.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private record Entry(String key, int id, String name, long recency) {
+    }
+
+    private static final class Node {
+        private String edge;
+        private Node[] children = NO_CHILDREN;
+        private Entry[] entries = NO_ENTRIES;
+        // number of names in the subtree
+        private int count;
+        // the MAX_SUGGESTIONS most recent names of the subtree, only while count > MAX_SUGGESTIONS
+        private Entry[] top;
+
+        private Node(String edge) {
+            this.edge = edge;
+        }
+    }
+}
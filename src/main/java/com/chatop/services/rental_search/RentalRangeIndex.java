@@ -0,0 +1,128 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Price and surface range index: both attributes are kept in primitive sorted arrays, plus dense
+ * id-indexed arrays used to check the other attribute of a candidate without any lookup structure.
+ * The initial load only fills the dense arrays, the sorted ones are built from them once at the end.
+ */
+@Component
+public class RentalRangeIndex extends AbstractRentalIndex {
+
+    private final SortedValueIndex prices = new SortedValueIndex();
+    private final SortedValueIndex surfaces = new SortedValueIndex();
+    private double[] priceById = new double[0];
+    private double[] surfaceById = new double[0];
+
+    @Override
+    protected void apply(RentalDTO rental) {
+        int id = rental.id();
+        ensureCapacity(id);
+        if (!Double.isNaN(priceById[id])) {
+            prices.remove(priceById[id], id);
+            surfaces.remove(surfaceById[id], id);
+        }
+        priceById[id] = rental.price();
+        surfaceById[id] = rental.surface();
+        prices.insert(rental.price(), id);
+        surfaces.insert(rental.surface(), id);
+    }
+
+    @Override
+    protected void bulkLoad(RentalDTO rental) {
+        int id = rental.id();
+        ensureCapacity(id);
+        priceById[id] = rental.price();
+        surfaceById[id] = rental.surface();
+    }
+
+    @Override
+    protected void finishBulkLoad() {
+        int[] ids = new int[priceById.length];
+        int count = 0;
+        for (int id = 0; id < priceById.length; id++) {
+            if (!Double.isNaN(priceById[id])) {
+                ids[count++] = id;
+            }
+        }
+        double[] priceValues = new double[count];
+        double[] surfaceValues = new double[count];
+        for (int i = 0; i < count; i++) {
+            priceValues[i] = priceById[ids[i]];
+            surfaceValues[i] = surfaceById[ids[i]];
+        }
+        prices.load(priceValues, Arrays.copyOf(ids, count), count);
+        surfaces.load(surfaceValues, Arrays.copyOf(ids, count), count);
+    }
+
+    public RangeSearchResult search(RangeQuery query) {
+        return read(() -> {
+            double minPrice = query.minPrice() == null ? Double.NEGATIVE_INFINITY : query.minPrice();
+            double maxPrice = query.maxPrice() == null ? Double.POSITIVE_INFINITY : query.maxPrice();
+            double minSurface = query.minSurface() == null ? Double.NEGATIVE_INFINITY : query.minSurface();
+            double maxSurface = query.maxSurface() == null ? Double.POSITIVE_INFINITY : query.maxSurface();
+
+            int priceFrom = prices.lowerBound(minPrice);
+            int priceTo = prices.upperBound(maxPrice);
+            int surfaceFrom = surfaces.lowerBound(minSurface);
+            int surfaceTo = surfaces.upperBound(maxSurface);
+
+            // walk the sorted attribute when a sort is asked for, otherwise the narrower of the two ranges
+            boolean byPrice = switch (query.sort()) {
+                case PRICE_ASC, PRICE_DESC -> true;
+                case SURFACE_ASC, SURFACE_DESC -> false;
+                case NONE -> priceTo - priceFrom <= surfaceTo - surfaceFrom;
+            };
+            boolean descending = query.sort() == RangeSort.PRICE_DESC || query.sort() == RangeSort.SURFACE_DESC;
+
+            SortedValueIndex driver = byPrice ? prices : surfaces;
+            int from = byPrice ? priceFrom : surfaceFrom;
+            int to = byPrice ? priceTo : surfaceTo;
+            double[] otherById = byPrice ? surfaceById : priceById;
+            double otherMin = byPrice ? minSurface : minPrice;
+            double otherMax = byPrice ? maxSurface : maxPrice;
+
+            int[] page = new int[query.limit()];
+            int found = 0;
+            int total = 0;
+            for (int i = 0; i < to - from; i++) {
+                int id = driver.idAt(descending ? to - 1 - i : from + i);
+                double other = otherById[id];
+                if (other < otherMin || other > otherMax) {
+                    continue;
+                }
+                if (total >= query.offset() && found < page.length) {
+                    page[found++] = id;
+                }
+                total++;
+            }
+            return new RangeSearchResult(Arrays.copyOf(page, found), total);
+        });
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < priceById.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, priceById.length * 2);
+        int previousLength = priceById.length;
+        priceById = Arrays.copyOf(priceById, capacity);
+        surfaceById = Arrays.copyOf(surfaceById, capacity);
+        Arrays.fill(priceById, previousLength, capacity, Double.NaN);
+        Arrays.fill(surfaceById, previousLength, capacity, Double.NaN);
+    }
+
+    public enum RangeSort {
+        NONE, PRICE_ASC, PRICE_DESC, SURFACE_ASC, SURFACE_DESC
+    }
+
+    public record RangeQuery(Double minPrice, Double maxPrice, Double minSurface, Double maxSurface, RangeSort sort, int offset, int limit) {
+    }
+
+    public record RangeSearchResult(int[] ids, int total) {
+    }
+}
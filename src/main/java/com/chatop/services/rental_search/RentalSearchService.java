@@ -0,0 +1,25 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalStatisticsResponse;
+import com.chatop.dtos.RentalSuggestionsResponse;
+import com.chatop.dtos.RentalsResponse;
+import com.chatop.dtos.RentalsSearchResponse;
+
+public interface RentalSearchService {
+
+    RentalsSearchResponse searchByRange(Double minPrice, Double maxPrice, Double minSurface, Double maxSurface,
+                                        String sort, Integer offset, Integer limit);
+
+    RentalsSearchResponse searchByText(String text, Integer offset, Integer limit);
+
+    RentalSuggestionsResponse suggestNames(String prefix, Integer limit);
+
+    RentalsSearchResponse searchInBox(Double minLatitude, Double maxLatitude, Double minLongitude, Double maxLongitude,
+                                      Integer offset, Integer limit);
+
+    RentalsSearchResponse searchNearby(Double latitude, Double longitude, Double radiusKm, Integer offset, Integer limit);
+
+    RentalsResponse findSimilar(Integer id, Integer k);
+
+    RentalStatisticsResponse retrieveStatistics();
+}
@@ -0,0 +1,203 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.dtos.RentalStatisticsResponse;
+import com.chatop.dtos.RentalSuggestionsResponse;
+import com.chatop.dtos.RentalsResponse;
+import com.chatop.dtos.RentalsSearchResponse;
+import com.chatop.exceptions.InvalidSearchParameterException;
+import com.chatop.exceptions.RentalNotFondException;
+import com.chatop.exceptions.SearchIndexNotReadyException;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.services.pagination.KeysetCursor;
+import com.chatop.services.rental.RentalGalleryLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class RentalSearchServiceImpl implements RentalSearchService {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_RADIUS_KM = 500;
+    private static final int DEFAULT_SIMILAR = 6;
+    private static final int MAX_SIMILAR = 50;
+
+    private final RentalRepository rentalRepository;
+    private final RentalGalleryLoader rentalGalleryLoader;
+    private final RentalRangeIndex rentalRangeIndex;
+    private final RentalTextIndex rentalTextIndex;
+    private final RentalNameSuggester rentalNameSuggester;
+    private final RentalGeoIndex rentalGeoIndex;
+    private final RentalSimilarityIndex rentalSimilarityIndex;
+    private final RentalStatisticsIndex rentalStatisticsIndex;
+
+    public RentalSearchServiceImpl(RentalRepository rentalRepository, RentalRangeIndex rentalRangeIndex, RentalTextIndex rentalTextIndex,
+                                   RentalNameSuggester rentalNameSuggester, RentalGeoIndex rentalGeoIndex,
+                                   RentalSimilarityIndex rentalSimilarityIndex, RentalStatisticsIndex rentalStatisticsIndex,
+                                   RentalGalleryLoader rentalGalleryLoader) {
+        this.rentalRepository = rentalRepository;
+        this.rentalGalleryLoader = rentalGalleryLoader;
+        this.rentalRangeIndex = rentalRangeIndex;
+        this.rentalTextIndex = rentalTextIndex;
+        this.rentalNameSuggester = rentalNameSuggester;
+        this.rentalGeoIndex = rentalGeoIndex;
+        this.rentalSimilarityIndex = rentalSimilarityIndex;
+        this.rentalStatisticsIndex = rentalStatisticsIndex;
+    }
+
+    @Override
+    public RentalsSearchResponse searchByRange(Double minPrice, Double maxPrice, Double minSurface, Double maxSurface,
+                                               String sort, Integer offset, Integer limit) {
+        checkLoaded(rentalRangeIndex);
+
+        RentalRangeIndex.RangeQuery query = new RentalRangeIndex.RangeQuery(
+                minPrice, maxPrice, minSurface, maxSurface, toRangeSort(sort), toOffset(offset),
+                KeysetCursor.clampLimit(limit, DEFAULT_LIMIT, MAX_LIMIT));
+        RentalRangeIndex.RangeSearchResult result = rentalRangeIndex.search(query);
+
+        log.info("Rentals range search matched {} rentals", result.total());
+        return new RentalsSearchResponse(findRentalDTOsInOrder(result.ids()), result.total());
+    }
+
+    @Override
+    public RentalsSearchResponse searchByText(String text, Integer offset, Integer limit) {
+        if (text == null || text.isBlank()) {
+            throw new InvalidSearchParameterException("Search text should not be empty");
+        }
+        checkLoaded(rentalTextIndex);
+
+        RentalTextIndex.TextSearchResult result = rentalTextIndex.search(text, toOffset(offset),
+                KeysetCursor.clampLimit(limit, DEFAULT_LIMIT, MAX_LIMIT));
+
+        log.info("Rentals text search matched {} rentals", result.total());
+        return new RentalsSearchResponse(findRentalDTOsInOrder(result.ids()), result.total());
+    }
+
+    @Override
+    public RentalSuggestionsResponse suggestNames(String prefix, Integer limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new InvalidSearchParameterException("Prefix should not be empty");
+        }
+        checkLoaded(rentalNameSuggester);
+
+        return new RentalSuggestionsResponse(rentalNameSuggester.suggest(prefix,
+                KeysetCursor.clampLimit(limit, DEFAULT_SUGGESTIONS, RentalNameSuggester.MAX_SUGGESTIONS)));
+    }
+
+    @Override
+    public RentalsSearchResponse searchInBox(Double minLatitude, Double maxLatitude, Double minLongitude, Double maxLongitude,
+                                             Integer offset, Integer limit) {
+        if (minLatitude == null || maxLatitude == null || minLongitude == null || maxLongitude == null) {
+            throw new InvalidSearchParameterException("minLat, maxLat, minLon and maxLon are required");
+        }
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            throw new InvalidSearchParameterException("Minimum latitude and longitude should not exceed the maximum ones");
+        }
+        checkLoaded(rentalGeoIndex);
+
+        RentalGeoIndex.GeoSearchResult result = rentalGeoIndex.searchBox(minLatitude, maxLatitude, minLongitude, maxLongitude,
+                toOffset(offset), KeysetCursor.clampLimit(limit, DEFAULT_LIMIT, MAX_LIMIT));
+
+        log.info("Rentals box search matched {} rentals", result.total());
+        return new RentalsSearchResponse(findRentalDTOsInOrder(result.ids()), result.total());
+    }
+
+    @Override
+    public RentalsSearchResponse searchNearby(Double latitude, Double longitude, Double radiusKm, Integer offset, Integer limit) {
+        if (latitude == null || longitude == null || radiusKm == null) {
+            throw new InvalidSearchParameterException("lat, lon and radiusKm are required");
+        }
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new InvalidSearchParameterException("Latitude should be within [-90, 90] and longitude within [-180, 180]");
+        }
+        if (radiusKm <= 0 || radiusKm > MAX_RADIUS_KM) {
+            throw new InvalidSearchParameterException("Radius should be within ]0, %d] km".formatted(MAX_RADIUS_KM));
+        }
+        checkLoaded(rentalGeoIndex);
+
+        RentalGeoIndex.GeoSearchResult result = rentalGeoIndex.searchRadius(latitude, longitude, radiusKm,
+                toOffset(offset), KeysetCursor.clampLimit(limit, DEFAULT_LIMIT, MAX_LIMIT));
+
+        log.info("Rentals nearby search matched {} rentals", result.total());
+        return new RentalsSearchResponse(findRentalDTOsInOrder(result.ids()), result.total());
+    }
+
+    @Override
+    public RentalsResponse findSimilar(Integer id, Integer k) {
+        checkLoaded(rentalSimilarityIndex);
+        if (!rentalSimilarityIndex.contains(id)) {
+            throw new RentalNotFondException("Rental not found with id:{%s}".formatted(id));
+        }
+
+        int[] ids = rentalSimilarityIndex.nearest(id, KeysetCursor.clampLimit(k, DEFAULT_SIMILAR, MAX_SIMILAR));
+
+        log.info("Found {} rentals similar to rental id:{}", ids.length, id);
+        return new RentalsResponse(findRentalDTOsInOrder(ids));
+    }
+
+    @Override
+    public RentalStatisticsResponse retrieveStatistics() {
+        checkLoaded(rentalStatisticsIndex);
+
+        return rentalStatisticsIndex.statistics();
+    }
+
+    private List<RentalDTO> findRentalDTOsInOrder(int[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        Map<Integer, RentalDTO> rentalsById = new HashMap<>();
+        rentalGalleryLoader.withGalleries(rentalRepository.findRentalDTOsByIdIn(Arrays.stream(ids).boxed().toList()))
+                .forEach(rental -> rentalsById.put(rental.id(), rental));
+
+        List<RentalDTO> rentals = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            RentalDTO rental = rentalsById.get(id);
+            if (rental != null) {
+                rentals.add(rental);
+            }
+        }
+        return rentals;
+    }
+
+    private static void checkLoaded(AbstractRentalIndex index) {
+        if (!index.isLoaded()) {
+            log.error("Search index {} is not loaded yet", index.getClass().getSimpleName());
+            throw new SearchIndexNotReadyException("Search index is still loading");
+        }
+    }
+
+    private static int toOffset(Integer offset) {
+        if (offset == null) {
+            return 0;
+        }
+        if (offset < 0) {
+            throw new InvalidSearchParameterException("Offset should not be negative");
+        }
+        return offset;
+    }
+
+    private static RentalRangeIndex.RangeSort toRangeSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return RentalRangeIndex.RangeSort.NONE;
+        }
+        return switch (sort) {
+            case "price" -> RentalRangeIndex.RangeSort.PRICE_ASC;
+            case "-price" -> RentalRangeIndex.RangeSort.PRICE_DESC;
+            case "surface" -> RentalRangeIndex.RangeSort.SURFACE_ASC;
+            case "-surface" -> RentalRangeIndex.RangeSort.SURFACE_DESC;
+            default -> throw new InvalidSearchParameterException(
+                    "Unknown sort '%s', expected one of price, -price, surface, -surface".formatted(sort));
+        };
+    }
+}
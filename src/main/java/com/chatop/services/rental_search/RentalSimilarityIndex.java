@@ -0,0 +1,264 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * k-nearest-neighbour index over (price, surface, price per m², creation day), each feature scaled to zero mean and
+ * unit variance. Rentals live in a balanced KD-tree stored in primitive arrays; rentals written since the last build are
+ * scanned from a small pending list and their stale tree entries skipped, until the pending list grows past
+ * {@code max(MIN_REBUILD_THRESHOLD, size / 16)} and the tree is rebuilt.
+ */
+@Component
+@Slf4j
+public class RentalSimilarityIndex extends AbstractRentalIndex {
+
+    private static final int DIMENSIONS = 4;
+    private static final int MIN_REBUILD_THRESHOLD = 1024;
+
+    private double[] featuresById = new double[0];
+    private int featureCount;
+
+    private float[] treePoints = new float[0];
+    private int[] treeIds = new int[0];
+    private final double[] means = new double[DIMENSIONS];
+    private final double[] scales = new double[DIMENSIONS];
+
+    private final BitSet staleInTree = new BitSet();
+    private final BitSet pending = new BitSet();
+    private final IntBag pendingIds = new IntBag();
+
+    public RentalSimilarityIndex() {
+        Arrays.fill(scales, 1);
+    }
+
+    @Override
+    protected void apply(RentalDTO rental) {
+        int id = rental.id();
+        ensureCapacity(id);
+        if (Double.isNaN(featuresById[id * DIMENSIONS])) {
+            featureCount++;
+        }
+        featuresById[id * DIMENSIONS] = rental.price();
+        featuresById[id * DIMENSIONS + 1] = rental.surface();
+        featuresById[id * DIMENSIONS + 2] = rental.surface() > 0 ? rental.price() / rental.surface() : 0;
+        featuresById[id * DIMENSIONS + 3] = rental.created_at() == null ? 0 : rental.created_at().toLocalDate().toEpochDay();
+
+        staleInTree.set(id);
+        if (!pending.get(id)) {
+            pending.set(id);
+            pendingIds.add(id);
+        }
+        if (isLoaded() && pendingIds.size() > Math.max(MIN_REBUILD_THRESHOLD, featureCount / 16)) {
+            rebuild();
+        }
+    }
+
+    @Override
+    protected void afterLoad() {
+        rebuild();
+    }
+
+    public boolean contains(int id) {
+        return read(() -> id < featuresById.length / DIMENSIONS && !Double.isNaN(featuresById[id * DIMENSIONS]));
+    }
+
+    /**
+     * @return the ids of the {@code k} rentals closest to the given one, closest first, the rental itself excluded
+     */
+    public int[] nearest(int id, int k) {
+        return read(() -> {
+            float[] query = normalized(id);
+            Neighbours neighbours = new Neighbours(k);
+            search(0, treeIds.length, 0, query, id, neighbours);
+            for (int i = 0; i < pendingIds.size(); i++) {
+                int pendingId = pendingIds.get(i);
+                if (pendingId != id) {
+                    neighbours.offer(pendingId, distance(normalized(pendingId), 0, query));
+                }
+            }
+            return neighbours.ids();
+        });
+    }
+
+    private void search(int from, int to, int depth, float[] query, int excludedId, Neighbours neighbours) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        int id = treeIds[middle];
+        if (id != excludedId && !staleInTree.get(id)) {
+            neighbours.offer(id, distance(treePoints, middle * DIMENSIONS, query));
+        }
+
+        int dimension = depth % DIMENSIONS;
+        double difference = query[dimension] - treePoints[middle * DIMENSIONS + dimension];
+        if (difference < 0) {
+            search(from, middle, depth + 1, query, excludedId, neighbours);
+            if (difference * difference < neighbours.worstDistance()) {
+                search(middle + 1, to, depth + 1, query, excludedId, neighbours);
+            }
+        } else {
+            search(middle + 1, to, depth + 1, query, excludedId, neighbours);
+            if (difference * difference < neighbours.worstDistance()) {
+                search(from, middle, depth + 1, query, excludedId, neighbours);
+            }
+        }
+    }
+
+    private void rebuild() {
+        int[] ids = new int[featureCount];
+        int count = 0;
+        for (int id = 0; id < featuresById.length / DIMENSIONS; id++) {
+            if (!Double.isNaN(featuresById[id * DIMENSIONS])) {
+                ids[count++] = id;
+            }
+        }
+
+        for (int dimension = 0; dimension < DIMENSIONS; dimension++) {
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (int id : ids) {
+                double value = featuresById[id * DIMENSIONS + dimension];
+                sum += value;
+                sumOfSquares += value * value;
+            }
+            double mean = count == 0 ? 0 : sum / count;
+            double variance = count == 0 ? 0 : sumOfSquares / count - mean * mean;
+            means[dimension] = mean;
+            scales[dimension] = variance > 1e-12 ? 1 / Math.sqrt(variance) : 1;
+        }
+
+        float[] points = new float[count * DIMENSIONS];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(normalized(ids[i]), 0, points, i * DIMENSIONS, DIMENSIONS);
+        }
+        build(points, ids, 0, count, 0);
+
+        treePoints = points;
+        treeIds = ids;
+        staleInTree.clear();
+        pending.clear();
+        pendingIds.clear();
+        log.info("Rental similarity tree rebuilt with {} rentals", count);
+    }
+
+    private static void build(float[] points, int[] ids, int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        select(points, ids, from, to - 1, middle, depth % DIMENSIONS);
+        build(points, ids, from, middle, depth + 1);
+        build(points, ids, middle + 1, to, depth + 1);
+    }
+
+    /**
+     * Quickselect: reorders {@code [left, right]} so that position {@code k} holds the element that would be there if
+     * the range was sorted on {@code dimension}, smaller or equal elements before it and greater or equal ones after.
+     */
+    private static void select(float[] points, int[] ids, int left, int right, int k, int dimension) {
+        while (right > left) {
+            float pivot = points[((left + right) >>> 1) * DIMENSIONS + dimension];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (points[i * DIMENSIONS + dimension] < pivot) {
+                    i++;
+                }
+                while (points[j * DIMENSIONS + dimension] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(points, ids, i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(float[] points, int[] ids, int a, int b) {
+        for (int dimension = 0; dimension < DIMENSIONS; dimension++) {
+            float point = points[a * DIMENSIONS + dimension];
+            points[a * DIMENSIONS + dimension] = points[b * DIMENSIONS + dimension];
+            points[b * DIMENSIONS + dimension] = point;
+        }
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+
+    private float[] normalized(int id) {
+        float[] point = new float[DIMENSIONS];
+        for (int dimension = 0; dimension < DIMENSIONS; dimension++) {
+            point[dimension] = (float) ((featuresById[id * DIMENSIONS + dimension] - means[dimension]) * scales[dimension]);
+        }
+        return point;
+    }
+
+    private static double distance(float[] points, int offset, float[] query) {
+        double sum = 0;
+        for (int dimension = 0; dimension < DIMENSIONS; dimension++) {
+            double difference = points[offset + dimension] - query[dimension];
+            sum += difference * difference;
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int id) {
+        int length = featuresById.length / DIMENSIONS;
+        if (id < length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, length * 2);
+        featuresById = Arrays.copyOf(featuresById, capacity * DIMENSIONS);
+        Arrays.fill(featuresById, length * DIMENSIONS, capacity * DIMENSIONS, Double.NaN);
+    }
+
+    /**
+     * The {@code k} closest candidates seen so far, kept sorted by squared distance.
+     */
+    private static final class Neighbours {
+
+        private final int[] ids;
+        private final double[] distances;
+        private int size;
+
+        private Neighbours(int k) {
+            this.ids = new int[k];
+            this.distances = new double[k];
+        }
+
+        double worstDistance() {
+            return size < ids.length ? Double.POSITIVE_INFINITY : distances[size - 1];
+        }
+
+        void offer(int id, double distance) {
+            if (distance >= worstDistance()) {
+                return;
+            }
+            int position = size < ids.length ? size++ : size - 1;
+            while (position > 0 && distances[position - 1] > distance) {
+                distances[position] = distances[position - 1];
+                ids[position] = ids[position - 1];
+                position--;
+            }
+            distances[position] = distance;
+            ids[position] = id;
+        }
+
+        int[] ids() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.dtos.RentalStatisticsResponse;
+import com.chatop.dtos.RentalStatisticsResponse.HistogramBucket;
+import com.chatop.dtos.RentalStatisticsResponse.ValueStatistics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Market statistics maintained on every rental write: counts and sums for the means, value multisets for exact
+ * min / max, a {@link QuantileSketch} for the price per m² percentiles and a fixed-bucket price histogram.
+ * Reading them never touches the rentals, the last computed response is kept until the next write.
+ */
+@Component
+public class RentalStatisticsIndex extends AbstractRentalIndex {
+
+    private static final double PRICE_BUCKET_WIDTH = 250;
+    private static final int PRICE_BUCKETS = 20;
+    private static final double[] PERCENTILES = {0.1, 0.25, 0.5, 0.75, 0.9};
+
+    private double[] priceById = new double[0];
+    private double[] surfaceById = new double[0];
+    private long count;
+    private double priceSum;
+    private double surfaceSum;
+    private final TreeMap<Double, Integer> prices = new TreeMap<>();
+    private final TreeMap<Double, Integer> surfaces = new TreeMap<>();
+    private final QuantileSketch pricePerSquareMeter = new QuantileSketch(0.01);
+    private final long[] priceHistogram = new long[PRICE_BUCKETS + 1];
+
+    private volatile RentalStatisticsResponse statistics;
+
+    @Override
+    protected void apply(RentalDTO rental) {
+        int id = rental.id();
+        ensureCapacity(id);
+        if (!Double.isNaN(priceById[id])) {
+            update(priceById[id], surfaceById[id], -1);
+        }
+        priceById[id] = rental.price();
+        surfaceById[id] = rental.surface();
+        update(rental.price(), rental.surface(), 1);
+        statistics = null;
+    }
+
+    public RentalStatisticsResponse statistics() {
+        RentalStatisticsResponse current = statistics;
+        if (current != null) {
+            return current;
+        }
+        return read(() -> {
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            for (double percentile : PERCENTILES) {
+                percentiles.put("p" + Math.round(percentile * 100), pricePerSquareMeter.quantile(percentile));
+            }
+
+            List<HistogramBucket> histogram = new ArrayList<>(priceHistogram.length);
+            for (int bucket = 0; bucket < PRICE_BUCKETS; bucket++) {
+                histogram.add(new HistogramBucket(bucket * PRICE_BUCKET_WIDTH, (bucket + 1) * PRICE_BUCKET_WIDTH, priceHistogram[bucket]));
+            }
+            histogram.add(new HistogramBucket(PRICE_BUCKETS * PRICE_BUCKET_WIDTH, null, priceHistogram[PRICE_BUCKETS]));
+
+            RentalStatisticsResponse computed = new RentalStatisticsResponse(count,
+                    new ValueStatistics(first(prices), last(prices), count == 0 ? null : priceSum / count),
+                    new ValueStatistics(first(surfaces), last(surfaces), count == 0 ? null : surfaceSum / count),
+                    percentiles, histogram);
+            statistics = computed;
+            return computed;
+        });
+    }
+
+    private void update(double price, double surface, int delta) {
+        count += delta;
+        priceSum += delta * price;
+        surfaceSum += delta * surface;
+        prices.merge(price, delta, (current, change) -> current + change == 0 ? null : current + change);
+        surfaces.merge(surface, delta, (current, change) -> current + change == 0 ? null : current + change);
+        if (surface > 0) {
+            if (delta > 0) {
+                pricePerSquareMeter.add(price / surface);
+            } else {
+                pricePerSquareMeter.remove(price / surface);
+            }
+        }
+        int bucket = (int) Math.min(PRICE_BUCKETS, Math.max(0, Math.floor(price / PRICE_BUCKET_WIDTH)));
+        priceHistogram[bucket] += delta;
+    }
+
+    private static Double first(TreeMap<Double, Integer> values) {
+        return values.isEmpty() ? null : values.firstKey();
+    }
+
+    private static Double last(TreeMap<Double, Integer> values) {
+        return values.isEmpty() ? null : values.lastKey();
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < priceById.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, priceById.length * 2);
+        int previousLength = priceById.length;
+        priceById = Arrays.copyOf(priceById, capacity);
+        surfaceById = Arrays.copyOf(surfaceById, capacity);
+        Arrays.fill(priceById, previousLength, capacity, Double.NaN);
+        Arrays.fill(surfaceById, previousLength, capacity, Double.NaN);
+    }
+}
@@ -0,0 +1,145 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over rental name and description, ranked with BM25. A name occurrence weighs {@value #NAME_WEIGHT}
+ * description occurrences.
+ */
+@Component
+public class RentalTextIndex extends AbstractRentalIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<Integer, IndexedRental> rentals = new HashMap<>();
+    private long totalLength;
+
+    @Override
+    protected void apply(RentalDTO rental) {
+        Map<String, Integer> frequencies = new TreeMap<>();
+        TextAnalyzer.tokenize(rental.name()).forEach(token -> frequencies.merge(token, NAME_WEIGHT, Integer::sum));
+        TextAnalyzer.tokenize(rental.description()).forEach(token -> frequencies.merge(token, 1, Integer::sum));
+
+        String[] terms = frequencies.keySet().toArray(String[]::new);
+        int[] termFrequencies = frequencies.values().stream().mapToInt(Integer::intValue).toArray();
+        int length = Arrays.stream(termFrequencies).sum();
+
+        IndexedRental previous = rentals.get(rental.id());
+        if (previous != null) {
+            if (Arrays.equals(previous.terms(), terms) && Arrays.equals(previous.frequencies(), termFrequencies)) {
+                return;
+            }
+            for (String term : previous.terms()) {
+                PostingList postingList = postings.get(term);
+                postingList.remove(rental.id());
+                if (postingList.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            totalLength -= previous.length();
+        }
+
+        for (int i = 0; i < terms.length; i++) {
+            postings.computeIfAbsent(terms[i], term -> new PostingList()).add(rental.id(), termFrequencies[i]);
+        }
+        rentals.put(rental.id(), new IndexedRental(terms, termFrequencies, length));
+        totalLength += length;
+    }
+
+    public TextSearchResult search(String text, int offset, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(text)));
+        return read(() -> {
+            List<PostingList.Cursor> cursors = new ArrayList<>();
+            List<Double> idfs = new ArrayList<>();
+            for (String term : terms) {
+                PostingList postingList = postings.get(term);
+                if (postingList != null) {
+                    PostingList.Cursor cursor = postingList.cursor();
+                    cursor.next();
+                    cursors.add(cursor);
+                    idfs.add(idf(postingList.documentCount()));
+                }
+            }
+            if (cursors.isEmpty()) {
+                return new TextSearchResult(new int[0], 0);
+            }
+
+            double averageLength = rentals.isEmpty() ? 1 : (double) totalLength / rentals.size();
+            int wanted = offset + limit;
+            PriorityQueue<ScoredRental> top = new PriorityQueue<>(Comparator.comparingDouble(ScoredRental::score)
+                    .thenComparing(Comparator.comparingInt(ScoredRental::id).reversed()));
+            int total = 0;
+
+            // postings are sorted by id: merge them so each rental is scored in one pass, without an accumulator map
+            boolean[] exhausted = new boolean[cursors.size()];
+            while (true) {
+                int id = Integer.MAX_VALUE;
+                for (int i = 0; i < cursors.size(); i++) {
+                    if (!exhausted[i]) {
+                        id = Math.min(id, cursors.get(i).id());
+                    }
+                }
+                if (id == Integer.MAX_VALUE) {
+                    break;
+                }
+
+                double lengthNorm = K1 * (1 - B + B * rentals.get(id).length() / averageLength);
+                double score = 0;
+                for (int i = 0; i < cursors.size(); i++) {
+                    PostingList.Cursor cursor = cursors.get(i);
+                    if (!exhausted[i] && cursor.id() == id) {
+                        int frequency = cursor.frequency();
+                        score += idfs.get(i) * frequency * (K1 + 1) / (frequency + lengthNorm);
+                        exhausted[i] = !cursor.next();
+                    }
+                }
+
+                total++;
+                if (wanted > 0 && (top.size() < wanted || score > top.peek().score())) {
+                    top.offer(new ScoredRental(id, score));
+                    if (top.size() > wanted) {
+                        top.poll();
+                    }
+                }
+            }
+
+            ScoredRental[] ranked = new ScoredRental[top.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = top.poll();
+            }
+            int from = Math.min(offset, ranked.length);
+            int[] ids = new int[ranked.length - from];
+            for (int i = from; i < ranked.length; i++) {
+                ids[i - from] = ranked[i].id();
+            }
+            return new TextSearchResult(ids, total);
+        });
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (rentals.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private record IndexedRental(String[] terms, int[] frequencies, int length) {
+    }
+
+    private record ScoredRental(int id, double score) {
+    }
+
+    public record TextSearchResult(int[] ids, int total) {
+    }
+}
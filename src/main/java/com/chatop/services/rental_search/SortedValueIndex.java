@@ -0,0 +1,136 @@
+package com.chatop.services.rental_search;
+
+import java.util.Arrays;
+
+/**
+ * Primitive (value, id) pairs kept sorted by value then id, so a value range maps to a contiguous slice of ids.
+ */
+final class SortedValueIndex {
+
+    private double[] values = new double[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    double valueAt(int position) {
+        return values[position];
+    }
+
+    int idAt(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Replaces the content with the given pairs, {@code ids} being in ascending order: sorted once by a stable merge
+     * sort on the values, where inserting them one by one would shift the arrays for every pair.
+     * {@link #insert} is meant for the changes coming after.
+     */
+    void load(double[] values, int[] ids, int size) {
+        double[] valueBuffer = new double[size];
+        int[] idBuffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int from = 0; from < size - width; from += 2 * width) {
+                merge(values, ids, valueBuffer, idBuffer, from, from + width, Math.min(from + 2 * width, size));
+            }
+        }
+        this.values = Arrays.copyOf(values, Math.max(16, size));
+        this.ids = Arrays.copyOf(ids, Math.max(16, size));
+        this.size = size;
+    }
+
+    void insert(double value, int id) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int position = -(search(value, id) + 1);
+        System.arraycopy(values, position, values, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        values[position] = value;
+        ids[position] = id;
+        size++;
+    }
+
+    void remove(double value, int id) {
+        int position = search(value, id);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+    }
+
+    /**
+     * @return the first position whose value is {@code >= min}
+     */
+    int lowerBound(double min) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < min) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position whose value is {@code > max}
+     */
+    int upperBound(double max) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= max) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void merge(double[] values, int[] ids, double[] valueBuffer, int[] idBuffer, int from, int middle, int to) {
+        System.arraycopy(values, from, valueBuffer, from, to - from);
+        System.arraycopy(ids, from, idBuffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int position = from; position < to; position++) {
+            if (right == to || (left < middle && Double.compare(valueBuffer[left], valueBuffer[right]) <= 0)) {
+                values[position] = valueBuffer[left];
+                ids[position] = idBuffer[left++];
+            } else {
+                values[position] = valueBuffer[right];
+                ids[position] = idBuffer[right++];
+            }
+        }
+    }
+
+    private int search(double value, int id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Double.compare(values[middle], value);
+            if (comparison == 0) {
+                comparison = Integer.compare(ids[middle], id);
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
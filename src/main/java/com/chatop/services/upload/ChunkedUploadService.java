@@ -0,0 +1,22 @@
+package com.chatop.services.upload;
+
+import com.chatop.dtos.UploadResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ChunkedUploadService {
+
+    UploadResponse createUpload(Long size) throws IOException;
+
+    UploadResponse writeChunk(String uploadId, int index, InputStream chunk) throws IOException;
+
+    UploadResponse retrieveUpload(String uploadId);
+
+    UploadResponse commitUpload(String uploadId) throws IOException;
+
+    /**
+     * @return the stored picture file name of a committed upload of the authenticated user, the upload is closed then
+     */
+    String retrieveCommittedPicture(String uploadId);
+}
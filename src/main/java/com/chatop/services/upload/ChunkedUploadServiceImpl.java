@@ -0,0 +1,335 @@
+package com.chatop.services.upload;
+
+import com.chatop.dtos.UploadResponse;
+import com.chatop.exceptions.InvalidUploadException;
+import com.chatop.exceptions.TooManyUploadsException;
+import com.chatop.exceptions.UploadNotFoundException;
+import com.chatop.services.image_storage.ImageStorageService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resumable uploads: the client declares the size, PUTs the chunks in any order (again after a failure) and commits.
+ * Each chunk is written at its offset in a file pre-allocated to the full size, the committed file is then handed
+ * to {@link ImageStorageService} like a regular upload. Sessions live in memory and expire after
+ * {@code uploads.expire-after} without activity, their file is deleted then. No file stays open between two chunks,
+ * and the number of sessions still receiving chunks is capped per user ({@code uploads.max-sessions-per-user}) and
+ * in total ({@code uploads.max-sessions}): a session stops counting once its picture is stored, and is dropped once
+ * the picture is attached to a rental.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private final ImageStorageService imageStorageService;
+    private final Path uploadDirectory;
+    private final int chunkSize;
+    private final long maxSize;
+    private final int maxSessionsPerUser;
+    private final int maxSessions;
+    private final Cache<String, UploadSession> sessions;
+    private final ConcurrentMap<String, Integer> sessionsByOwner = new ConcurrentHashMap<>();
+    private final AtomicInteger openSessions = new AtomicInteger();
+
+    @Value("${image-url}")
+    private String imageUrl;
+
+    public ChunkedUploadServiceImpl(ImageStorageService imageStorageService,
+                                    @Value("${uploads.path}") String uploadPath,
+                                    @Value("${uploads.chunk-size:1048576}") int chunkSize,
+                                    @Value("${uploads.max-size:20971520}") long maxSize,
+                                    @Value("${uploads.expire-after:PT24H}") Duration expireAfter,
+                                    @Value("${uploads.max-sessions-per-user:10}") int maxSessionsPerUser,
+                                    @Value("${uploads.max-sessions:1000}") int maxSessions) {
+        this.imageStorageService = imageStorageService;
+        this.uploadDirectory = Paths.get(uploadPath);
+        this.chunkSize = chunkSize;
+        this.maxSize = maxSize;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.maxSessions = maxSessions;
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(expireAfter)
+                .<String, UploadSession>removalListener((uploadId, session, cause) -> {
+                    if (session != null) {
+                        session.discard();
+                        release(session);
+                    }
+                })
+                .build();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(uploadDirectory);
+    }
+
+    @Override
+    public UploadResponse createUpload(Long size) throws IOException {
+        if (size == null || size <= 0 || size > maxSize) {
+            log.error("Upload size out of range: {}", size);
+            throw new InvalidUploadException("Upload size should be between 1 and %d bytes".formatted(maxSize));
+        }
+        String owner = currentUser();
+        reserve(owner);
+        String uploadId = UUID.randomUUID().toString();
+        Path file = uploadDirectory.resolve(uploadId + ".part");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // pre-allocated to the full size so that every chunk is a positional write inside the file
+            channel.write(ByteBuffer.allocate(1), size - 1);
+        } catch (IOException | RuntimeException e) {
+            release(owner);
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        UploadSession session = new UploadSession(uploadId, owner, file, size, chunkSize);
+        sessions.put(uploadId, session);
+        log.info("Upload {} created for {} bytes", uploadId, size);
+        return session.toResponse(imageUrl);
+    }
+
+    @Override
+    public UploadResponse writeChunk(String uploadId, int index, InputStream chunk) throws IOException {
+        UploadSession session = find(uploadId);
+        if (index < 0 || index >= session.chunks) {
+            throw new InvalidUploadException("Chunk index should be between 0 and %d".formatted(session.chunks - 1));
+        }
+        long offset = (long) index * session.chunkSize;
+        long length = Math.min(session.chunkSize, session.size - offset);
+
+        synchronized (session) {
+            session.checkWritable();
+            session.writers++;
+        }
+        try {
+            write(session, index, offset, length, chunk);
+        } finally {
+            synchronized (session) {
+                session.writers--;
+            }
+        }
+        return session.toResponse(imageUrl);
+    }
+
+    private void write(UploadSession session, int index, long offset, long length, InputStream chunk) throws IOException {
+        // chunks of one upload are written concurrently at distinct offsets, each through its own channel
+        ReadableByteChannel source = Channels.newChannel(chunk);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(session.file, StandardOpenOption.WRITE)) {
+            while (written < length) {
+                long count = channel.transferFrom(source, offset + written, length - written);
+                if (count <= 0) {
+                    break;
+                }
+                written += count;
+            }
+        } catch (NoSuchFileException e) {
+            // expired meanwhile, its file is gone
+            throw new UploadNotFoundException("Upload not found with id:{%s}".formatted(session.uploadId));
+        }
+        if (written != length || chunk.read() != -1) {
+            log.error("Chunk {} of upload {} has a wrong size", index, session.uploadId);
+            throw new InvalidUploadException("Chunk %d should be %d bytes long".formatted(index, length));
+        }
+
+        synchronized (session) {
+            session.received.set(index);
+        }
+    }
+
+    @Override
+    public UploadResponse retrieveUpload(String uploadId) {
+        return find(uploadId).toResponse(imageUrl);
+    }
+
+    @Override
+    public UploadResponse commitUpload(String uploadId) throws IOException {
+        UploadSession session = find(uploadId);
+        synchronized (session) {
+            if (session.picture != null) {
+                return session.toResponse(imageUrl);
+            }
+            session.checkWritable();
+            if (session.writers > 0) {
+                throw new InvalidUploadException("Upload %s still has chunks being written".formatted(uploadId));
+            }
+            List<Integer> missing = session.missingChunks();
+            if (!missing.isEmpty()) {
+                throw new InvalidUploadException("Upload %s is missing chunks %s".formatted(uploadId, missing));
+            }
+            // from here on chunk writes are refused, the file is read as it is
+            session.committing = true;
+        }
+
+        String picture;
+        try {
+            picture = imageStorageService.savePicture(session.file);
+        } catch (IOException | RuntimeException e) {
+            // not a valid picture or not stored: the session cannot be committed again, the client starts over
+            log.error("Upload {} could not be committed", uploadId, e);
+            sessions.invalidate(uploadId);
+            throw e;
+        }
+        synchronized (session) {
+            session.picture = picture;
+            session.committing = false;
+        }
+        Files.deleteIfExists(session.file);
+        // nothing is written anymore, the session only keeps the picture name until it is attached
+        release(session);
+        log.info("Upload {} committed as {}", uploadId, picture);
+        return session.toResponse(imageUrl);
+    }
+
+    @Override
+    public String retrieveCommittedPicture(String uploadId) {
+        UploadSession session = find(uploadId);
+        synchronized (session) {
+            if (session.picture == null) {
+                throw new InvalidUploadException("Upload %s is not committed".formatted(uploadId));
+            }
+            // the picture is about to be referenced, its date is refreshed so that the orphan collector keeps it
+            if (!touch(session.picture)) {
+                sessions.invalidate(uploadId);
+                throw new UploadNotFoundException("Picture of upload %s is no longer stored, upload it again".formatted(uploadId));
+            }
+            // handed to one rental only, the upload id cannot be used again
+            sessions.invalidate(uploadId);
+            return session.picture;
+        }
+    }
+
+    private boolean touch(String picture) {
+        try {
+            return imageStorageService.touch(picture);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reserve(String owner) {
+        sessionsByOwner.compute(owner, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxSessionsPerUser) {
+                log.error("User {} already has {} uploads in progress", owner, current);
+                throw new TooManyUploadsException("At most %d uploads can be in progress at once".formatted(maxSessionsPerUser));
+            }
+            return current + 1;
+        });
+        if (openSessions.incrementAndGet() > maxSessions) {
+            release(owner);
+            log.error("{} uploads already in progress", maxSessions);
+            throw new TooManyUploadsException("Too many uploads in progress, try again later");
+        }
+    }
+
+    private void release(UploadSession session) {
+        synchronized (session) {
+            if (session.released) {
+                return;
+            }
+            session.released = true;
+        }
+        release(session.owner);
+    }
+
+    private void release(String owner) {
+        openSessions.decrementAndGet();
+        sessionsByOwner.computeIfPresent(owner, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private UploadSession find(String uploadId) {
+        UploadSession session = uploadId == null ? null : sessions.getIfPresent(uploadId);
+        // another user's upload is reported as missing
+        if (session == null || !session.owner.equals(currentUser())) {
+            throw new UploadNotFoundException("Upload not found with id:{%s}".formatted(uploadId));
+        }
+        return session;
+    }
+
+    private static String currentUser() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
+    private static final class UploadSession {
+        private final String uploadId;
+        private final String owner;
+        private final Path file;
+        private final long size;
+        private final int chunkSize;
+        private final int chunks;
+        private final BitSet received;
+        private String picture;
+        private boolean committing;
+        private int writers;
+        // its slot of the session caps was given back
+        private boolean released;
+
+        private UploadSession(String uploadId, String owner, Path file, long size, int chunkSize) {
+            this.uploadId = uploadId;
+            this.owner = owner;
+            this.file = file;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunks = (int) ((size + chunkSize - 1) / chunkSize);
+            this.received = new BitSet(chunks);
+        }
+
+        private void checkWritable() {
+            if (picture != null) {
+                throw new InvalidUploadException("Upload %s is already committed".formatted(uploadId));
+            }
+            if (committing) {
+                throw new InvalidUploadException("Upload %s is being committed".formatted(uploadId));
+            }
+        }
+
+        private List<Integer> missingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            for (int index = received.nextClearBit(0); index < chunks; index = received.nextClearBit(index + 1)) {
+                missing.add(index);
+            }
+            return missing;
+        }
+
+        private synchronized UploadResponse toResponse(String imageUrl) {
+            return picture == null
+                    ? new UploadResponse(uploadId, UploadResponse.OPEN, size, chunkSize, chunks, missingChunks(), null)
+                    : new UploadResponse(uploadId, UploadResponse.COMMITTED, size, chunkSize, chunks, List.of(), imageUrl + picture);
+        }
+
+        private void discard() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Error while discarding upload {}", uploadId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+-- Schema changes to apply on top of the base ChâTop script (Hibernate only validates the schema).
+
+-- Keyset pagination of GET /api/rentals over (created_at, id)
+CREATE INDEX idx_rentals_created_at_id ON RENTALS (created_at, id);
+
+-- Rental location (nullable, given together)
+ALTER TABLE RENTALS ADD COLUMN latitude DOUBLE NULL, ADD COLUMN longitude DOUBLE NULL;
+
+-- Keyset pagination of an owner's rentals over (owner_id, created_at, id)
+CREATE INDEX idx_rentals_owner_created_at_id ON RENTALS (owner_id, created_at, id);
+
+-- Pooled table id generator for RENTALS (allows JDBC insert batching), seeded past the current ids
+CREATE TABLE ID_GENERATORS (
+    sequence_name VARCHAR(255) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+INSERT INTO ID_GENERATORS (sequence_name, next_val) SELECT 'RENTALS', COALESCE(MAX(id), 0) + 51 FROM RENTALS;
+
+-- Optimistic locking version for rentals (PATCH /api/rentals/{id})
+ALTER TABLE RENTALS ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- Resized picture variants, "320w=url;640w=url;1024w=url"
+ALTER TABLE RENTALS ADD COLUMN picture_variants VARCHAR(1000);
+
+-- Reference counting of content-addressed pictures (count of rentals per picture URL)
+CREATE INDEX idx_rentals_picture ON RENTALS (picture);
+
+-- Ordered picture gallery of a rental (POST /api/rentals/{id}/pictures), ids from the pooled table generator
+CREATE TABLE RENTAL_PICTURES (
+    id INT NOT NULL PRIMARY KEY,
+    rental_id INT NOT NULL,
+    position INT NOT NULL,
+    picture VARCHAR(255) NOT NULL,
+    picture_variants VARCHAR(1000),
+    created_at TIMESTAMP NULL,
+    CONSTRAINT fk_rental_pictures_rental FOREIGN KEY (rental_id) REFERENCES RENTALS (id)
+);
+CREATE INDEX idx_rental_pictures_rental_position ON RENTAL_PICTURES (rental_id, position);
+CREATE INDEX idx_rental_pictures_picture ON RENTAL_PICTURES (picture);
+INSERT INTO ID_GENERATORS (sequence_name, next_val) VALUES ('RENTAL_PICTURES', 1);
+
+-- Keyset pagination of the messages of a rental and of an owner's inbox over (rental_id, created_at, id), newest first
+CREATE INDEX idx_messages_rental_created_at_id ON MESSAGES (rental_id, created_at DESC, id DESC);
+
+-- Owner of the rental copied on its messages, the inbox of an owner is read over (owner_id, rental_id, created_at, id)
+ALTER TABLE MESSAGES ADD COLUMN owner_id INT NULL;
+UPDATE MESSAGES m JOIN RENTALS r ON r.id = m.rental_id SET m.owner_id = r.owner_id;
+CREATE INDEX idx_messages_owner_rental_created_at_id ON MESSAGES (owner_id, rental_id, created_at DESC, id DESC);
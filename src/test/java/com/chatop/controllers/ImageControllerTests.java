@@ -0,0 +1,73 @@
+package com.chatop.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageControllerTests {
+
+	private static final String ETAG = "\"5f1c0c3b\"";
+
+	@Test
+	void rangeWithBothBounds() {
+		assertThat(ImageController.parseRange("bytes=0-499", 1000)).containsExactly(0, 499);
+		assertThat(ImageController.parseRange("bytes= 500 - 999 ", 1000)).containsExactly(500, 999);
+	}
+
+	@Test
+	void openEndedRangeGoesToTheLastByte() {
+		assertThat(ImageController.parseRange("bytes=900-", 1000)).containsExactly(900, 999);
+	}
+
+	@Test
+	void endPastTheSizeIsClamped() {
+		assertThat(ImageController.parseRange("bytes=900-5000", 1000)).containsExactly(900, 999);
+	}
+
+	@Test
+	void suffixRangeServesTheLastBytes() {
+		assertThat(ImageController.parseRange("bytes=-100", 1000)).containsExactly(900, 999);
+		assertThat(ImageController.parseRange("bytes=-5000", 1000)).containsExactly(0, 999);
+	}
+
+	@Test
+	void malformedOrMultipleRangesAreIgnored() {
+		assertThat(ImageController.parseRange("items=0-10", 1000)).isEmpty();
+		assertThat(ImageController.parseRange("bytes=0-10,20-30", 1000)).isEmpty();
+		assertThat(ImageController.parseRange("bytes=10", 1000)).isEmpty();
+		assertThat(ImageController.parseRange("bytes=a-b", 1000)).isEmpty();
+		assertThat(ImageController.parseRange("bytes=500-100", 1000)).isEmpty();
+	}
+
+	@Test
+	void rangeStartingPastTheEndIsNotSatisfiable() {
+		assertThat(ImageController.parseRange("bytes=1000-", 1000)).isNull();
+		assertThat(ImageController.parseRange("bytes=1500-2000", 1000)).isNull();
+		assertThat(ImageController.parseRange("bytes=-0", 1000)).isNull();
+		assertThat(ImageController.parseRange("bytes=0-", 0)).isNull();
+	}
+
+	@Test
+	void noRangeServesTheWholeImage() {
+		assertThat(ImageController.requestedRange(null, null, ETAG, 1000)).isEmpty();
+		assertThat(ImageController.requestedRange(null, ETAG, ETAG, 1000)).isEmpty();
+	}
+
+	@Test
+	void matchingIfRangeServesTheRange() {
+		assertThat(ImageController.requestedRange("bytes=100-199", ETAG, ETAG, 1000)).containsExactly(100, 199);
+		assertThat(ImageController.requestedRange("bytes=100-199", null, ETAG, 1000)).containsExactly(100, 199);
+	}
+
+	@Test
+	void changedIfRangeServesTheWholeImage() {
+		assertThat(ImageController.requestedRange("bytes=100-199", "\"0ld\"", ETAG, 1000)).isEmpty();
+		// a stale validator is not an error, even with a range that could not be satisfied
+		assertThat(ImageController.requestedRange("bytes=5000-", "\"0ld\"", ETAG, 1000)).isEmpty();
+	}
+
+	@Test
+	void matchingIfRangeWithUnsatisfiableRangeIs416() {
+		assertThat(ImageController.requestedRange("bytes=5000-", ETAG, ETAG, 1000)).isNull();
+	}
+}
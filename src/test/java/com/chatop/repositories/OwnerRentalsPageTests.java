@@ -0,0 +1,170 @@
+package com.chatop.repositories;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.models.Rental;
+import com.chatop.models.User;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The pages of an owner's rentals are read through an index on owner_id, never by scanning the table: the SQL
+ * generated for findOwnerFirstPage and findOwnerPageAfter is explained by H2 with the parameters bound in order.
+ * On these tables H2 picks the single-column index it creates for the owner foreign key rather than
+ * idx_rentals_owner_created_at_id, either one confines the read to the owner's rows.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.chatop.repositories.OwnerRentalsPageTests$RecordingInspector"
+})
+class OwnerRentalsPageTests {
+
+	// H2 prints the index and the condition it looks up before the WHERE clause
+	private static final String OWNER_LOOKUP = ": OWNER_ID = ?1 */";
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private RentalRepository rentalRepository;
+
+	private User owner;
+
+	@BeforeEach
+	void createRentals() {
+		owner = persistUser("owner@chatop.com");
+		User otherOwner = persistUser("other@chatop.com");
+		for (int number = 0; number < 10; number++) {
+			// pairs of rentals created at the same time, the id breaks the tie
+			persistRental(owner, NOW.minusHours(number / 2));
+			persistRental(otherOwner, NOW.minusHours(number / 2));
+		}
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	void pagesWalkTheOwnerRentalsNewestFirst() {
+		List<RentalDTO> seen = new ArrayList<>();
+		List<RentalDTO> page = rentalRepository.findOwnerFirstPage(owner.getId(), PageRequest.of(0, 3));
+		while (!page.isEmpty()) {
+			seen.addAll(page);
+			RentalDTO last = page.get(page.size() - 1);
+			page = rentalRepository.findOwnerPageAfter(owner.getId(), last.created_at(), last.id(), PageRequest.of(0, 3));
+		}
+
+		assertThat(seen).hasSize(10).allSatisfy(rental -> assertThat(rental.owner_id()).isEqualTo(owner.getId()));
+		for (int i = 1; i < seen.size(); i++) {
+			RentalDTO previous = seen.get(i - 1);
+			RentalDTO current = seen.get(i);
+			assertThat(current.created_at().isBefore(previous.created_at())
+					|| (current.created_at().equals(previous.created_at()) && current.id() < previous.id())).isTrue();
+		}
+	}
+
+	@Test
+	void firstPageIsLookedUpByOwner() throws SQLException {
+		RecordingInspector.clear();
+		rentalRepository.findOwnerFirstPage(owner.getId(), PageRequest.of(0, 3));
+
+		String plan = explain(RecordingInspector.lastSelect(), owner.getId(), 0, 3);
+		assertThat(plan).contains(OWNER_LOOKUP);
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void pageAfterIsLookedUpByOwner() throws SQLException {
+		RecordingInspector.clear();
+		rentalRepository.findOwnerPageAfter(owner.getId(), NOW, Integer.MAX_VALUE, PageRequest.of(0, 3));
+
+		Timestamp createdAt = Timestamp.valueOf(NOW);
+		String plan = explain(RecordingInspector.lastSelect(), owner.getId(), createdAt, createdAt, Integer.MAX_VALUE, 0, 3);
+		assertThat(plan).contains(OWNER_LOOKUP);
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	private String explain(String sql, Object... parameters) throws SQLException {
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+			for (int i = 0; i < parameters.length; i++) {
+				statement.setObject(i + 1, parameters[i]);
+			}
+			try (ResultSet plan = statement.executeQuery()) {
+				assertThat(plan.next()).isTrue();
+				return plan.getString(1);
+			}
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	private User persistUser(String email) {
+		return entityManager.persist(User.builder()
+				.email(email)
+				.name(email)
+				.password("password")
+				.createdAt(NOW)
+				.build());
+	}
+
+	private void persistRental(User rentalOwner, LocalDateTime createdAt) {
+		entityManager.persist(Rental.builder()
+				.name("Rental")
+				.surface(50)
+				.price(500)
+				.owner(rentalOwner)
+				.createdAt(createdAt)
+				.build());
+	}
+
+	public static class RecordingInspector implements StatementInspector {
+
+		private static final List<String> STATEMENTS = new ArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			synchronized (STATEMENTS) {
+				STATEMENTS.add(sql);
+			}
+			return sql;
+		}
+
+		static void clear() {
+			synchronized (STATEMENTS) {
+				STATEMENTS.clear();
+			}
+		}
+
+		static String lastSelect() {
+			synchronized (STATEMENTS) {
+				for (int i = STATEMENTS.size() - 1; i >= 0; i--) {
+					if (STATEMENTS.get(i).trim().toLowerCase().startsWith("select")) {
+						return STATEMENTS.get(i);
+					}
+				}
+			}
+			throw new AssertionError("No select statement was run");
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.chatop.repositories;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.models.Rental;
+import com.chatop.models.RentalPicture;
+import com.chatop.models.User;
+import com.chatop.services.rental.RentalGalleryLoader;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Listing rentals runs the same number of statements whatever the number of rentals: one for the rentals, one for
+ * their galleries. Neither the owners nor the gallery rows are loaded one rental at a time.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(RentalGalleryLoader.class)
+class RentalReadStatementsTests {
+
+	private static final int RENTALS = 40;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private RentalRepository rentalRepository;
+
+	@Autowired
+	private RentalGalleryLoader rentalGalleryLoader;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void createRentals() {
+		LocalDateTime now = LocalDateTime.now();
+		for (int number = 0; number < RENTALS; number++) {
+			// one owner per rental, so that loading the owners would show as one statement per rental
+			User owner = entityManager.persist(User.builder()
+					.email("owner%d@chatop.com".formatted(number))
+					.name("owner%d@chatop.com".formatted(number))
+					.password("password")
+					.createdAt(now)
+					.build());
+			Rental rental = entityManager.persist(Rental.builder()
+					.name("Rental " + number)
+					.surface(50)
+					.price(500)
+					.picture("http://localhost/images/picture.jpg")
+					.owner(owner)
+					.createdAt(now.minusMinutes(number))
+					.build());
+			for (int position = 0; position < 2; position++) {
+				entityManager.persist(RentalPicture.builder()
+						.rental(rental)
+						.position(position)
+						.picture("http://localhost/images/gallery-%d.jpg".formatted(position))
+						.createdAt(now)
+						.build());
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void listingAllRentalsRunsTwoStatements() {
+		List<RentalDTO> rentals = rentalGalleryLoader.withGalleries(rentalRepository.findAllRentalDTOs());
+
+		assertThat(rentals).hasSize(RENTALS);
+		assertThat(rentals).allSatisfy(rental -> {
+			assertThat(rental.owner_id()).isNotNull();
+			assertThat(rental.gallery()).hasSize(2);
+		});
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	void statementCountDoesNotGrowWithThePageSize() {
+		long smallPage = statementsToList(5);
+		long fullPage = statementsToList(RENTALS);
+
+		assertThat(smallPage).isEqualTo(2);
+		assertThat(fullPage).isEqualTo(smallPage);
+	}
+
+	private long statementsToList(int pageSize) {
+		statistics.clear();
+		List<RentalDTO> rentals = rentalGalleryLoader.withGalleries(rentalRepository.findFirstPage(PageRequest.of(0, pageSize)));
+		assertThat(rentals).hasSize(pageSize);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+		return statistics.getPrepareStatementCount();
+	}
+}
@@ -0,0 +1,88 @@
+package com.chatop.services.image_storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageReferenceSetTests {
+
+	private static final String DIGEST = "0f".repeat(32);
+	private static final String OTHER_DIGEST = "f0".repeat(32);
+
+	@Test
+	void digestIsReadFromPictureAndVariantNames() {
+		assertThat(ImageReferenceSet.digest(DIGEST + ".png")).isEqualTo(DIGEST);
+		assertThat(ImageReferenceSet.digest(DIGEST + ".jpg")).isEqualTo(DIGEST);
+		assertThat(ImageReferenceSet.digest(DIGEST + "-320w.jpg")).isEqualTo(DIGEST);
+	}
+
+	@Test
+	void namesThatAreNotContentAddressesHaveNoDigest() {
+		assertThat(ImageReferenceSet.digest("photo.jpg")).isNull();
+		assertThat(ImageReferenceSet.digest(DIGEST + ".gif")).isNull();
+		assertThat(ImageReferenceSet.digest(DIGEST.toUpperCase() + ".jpg")).isNull();
+		assertThat(ImageReferenceSet.digest(DIGEST.substring(1) + ".jpg")).isNull();
+		assertThat(ImageReferenceSet.digest(DIGEST + "-w.jpg")).isNull();
+		assertThat(ImageReferenceSet.digest("x" + DIGEST + ".jpg")).isNull();
+	}
+
+	@Test
+	void urlsNamesAndVariantsOfAPictureShareOneReference() {
+		ImageReferenceSet references = new ImageReferenceSet();
+		references.add("http://localhost:3001/api/images/" + DIGEST + ".jpg");
+		references.add(DIGEST + ".jpg");
+		references.add("http://localhost:3001/api/images/" + DIGEST + "-640w.jpg");
+		references.add("http://localhost:3001/api/images/photo.jpg");
+
+		references.seal();
+
+		assertThat(references.size()).isEqualTo(1);
+		assertThat(references.contains(DIGEST)).isTrue();
+		assertThat(references.contains(OTHER_DIGEST)).isFalse();
+	}
+
+	@Test
+	void everyAddedPictureIsFoundAfterSealing() throws NoSuchAlgorithmException {
+		MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+		List<String> added = new ArrayList<>();
+		List<String> absent = new ArrayList<>();
+		ImageReferenceSet references = new ImageReferenceSet();
+		// more than the initial capacity, with digests on both sides of the sign bit of the keys
+		for (int i = 0; i < 5000; i++) {
+			String digest = HexFormat.of().formatHex(sha256.digest(Integer.toString(i).getBytes()));
+			if (i % 3 == 0) {
+				absent.add(digest);
+			} else {
+				added.add(digest);
+				references.add(digest + ".png");
+				references.add(digest + ".png");
+			}
+		}
+
+		references.seal();
+
+		assertThat(references.size()).isEqualTo(added.size());
+		for (String digest : added) {
+			assertThat(references.contains(digest)).isTrue();
+		}
+		for (String digest : absent) {
+			assertThat(references.contains(digest)).isFalse();
+		}
+	}
+
+	@Test
+	void nothingCanBeAddedOnceSealed() {
+		ImageReferenceSet references = new ImageReferenceSet().seal();
+
+		assertThat(references.size()).isZero();
+		assertThat(references.contains(DIGEST)).isFalse();
+		assertThatThrownBy(() -> references.add(DIGEST + ".jpg")).isInstanceOf(IllegalStateException.class);
+	}
+}
@@ -0,0 +1,91 @@
+package com.chatop.services.image_storage;
+
+import com.chatop.exceptions.InvalidImageFormatException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A multipart upload is read once, stored under the digest of its bytes, and leaves no spooled file behind.
+ */
+class ImageStorageServiceImplTests {
+
+	private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3, 4, 5};
+
+	@TempDir
+	Path directory;
+
+	private ImageStorageServiceImpl store;
+
+	@BeforeEach
+	void createStore() {
+		store = new ImageStorageServiceImpl(event -> { }, directory.toString(), "flat");
+	}
+
+	@Test
+	void uploadIsReadOnceAndStoredUnderItsDigest() throws Exception {
+		CountingMultipartFile upload = new CountingMultipartFile(PNG);
+
+		String fileName = store.savePicture(upload);
+
+		assertThat(upload.streamsOpened).isEqualTo(1);
+		assertThat(fileName).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PNG)) + ".png");
+		assertThat(Files.readAllBytes(directory.resolve(fileName))).isEqualTo(PNG);
+		assertThat(spooledFiles()).isEmpty();
+	}
+
+	@Test
+	void duplicateUploadIsNotStoredAgain() throws IOException {
+		String first = store.savePicture(new CountingMultipartFile(PNG));
+		String second = store.savePicture(new CountingMultipartFile(PNG));
+
+		assertThat(second).isEqualTo(first);
+		try (Stream<Path> files = Files.list(directory)) {
+			assertThat(files).containsExactly(directory.resolve(first));
+		}
+	}
+
+	@Test
+	void rejectedUploadLeavesNothingBehind() throws IOException {
+		byte[] text = "not an image".getBytes();
+
+		assertThatThrownBy(() -> store.savePicture(new CountingMultipartFile(text))).isInstanceOf(InvalidImageFormatException.class);
+		try (Stream<Path> files = Files.list(directory)) {
+			assertThat(files).isEmpty();
+		}
+	}
+
+	private List<Path> spooledFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith(".")).toList();
+		}
+	}
+
+	private static final class CountingMultipartFile extends MockMultipartFile {
+
+		private int streamsOpened;
+
+		private CountingMultipartFile(byte[] content) {
+			super("picture", "picture.png", "image/png", content);
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			streamsOpened++;
+			return super.getInputStream();
+		}
+	}
+}
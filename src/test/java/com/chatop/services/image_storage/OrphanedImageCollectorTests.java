@@ -0,0 +1,110 @@
+package com.chatop.services.image_storage;
+
+import com.chatop.models.Rental;
+import com.chatop.models.RentalPicture;
+import com.chatop.models.User;
+import com.chatop.repositories.RentalPictureRepository;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A stored file is referenced by its digest, whatever the host and path of the URL stored in the database.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class OrphanedImageCollectorTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+	private static final String OTHER_HOST = "https://cdn.chatop.com/images/";
+	private static final String REFERENCED = "a".repeat(64);
+	private static final String IN_GALLERY = "b".repeat(64);
+	private static final String ORPHANED = "c".repeat(64);
+
+	@TempDir
+	Path directory;
+
+	@Autowired
+	private RentalRepository rentalRepository;
+
+	@Autowired
+	private RentalPictureRepository rentalPictureRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private OrphanedImageCollector collector;
+
+	@BeforeEach
+	void createCollector() {
+		ImageStorageServiceImpl store = new ImageStorageServiceImpl(event -> { }, directory.toString(), "flat");
+		collector = new OrphanedImageCollector(store, rentalRepository, rentalPictureRepository, transactionManager,
+				new SimpleMeterRegistry(), Duration.ofHours(48), 1_000_000, false);
+
+		User owner = userRepository.save(User.builder()
+				.email("owner@chatop.com")
+				.name("owner")
+				.password("password")
+				.createdAt(NOW)
+				.build());
+		Rental rental = rentalRepository.save(Rental.builder()
+				.name("Rental")
+				.surface(50)
+				.price(500)
+				.picture(OTHER_HOST + REFERENCED + ".jpg")
+				.owner(owner)
+				.createdAt(NOW)
+				.build());
+		rentalPictureRepository.save(RentalPicture.builder()
+				.rental(rental)
+				.position(0)
+				.picture(OTHER_HOST + IN_GALLERY + ".png")
+				.createdAt(NOW)
+				.build());
+	}
+
+	@Test
+	void picturesStoredUnderAnotherHostAreReferenced() {
+		assertThat(collector.isReferenced(REFERENCED)).isTrue();
+		assertThat(collector.isReferenced(IN_GALLERY)).isTrue();
+		assertThat(collector.isReferenced(ORPHANED)).isFalse();
+	}
+
+	@Test
+	void onlyTheOrphanedFilesAreDeleted() throws IOException {
+		Path referenced = storedLongAgo(REFERENCED + ".jpg");
+		Path variant = storedLongAgo(REFERENCED + "-320w.jpg");
+		Path inGallery = storedLongAgo(IN_GALLERY + ".png");
+		Path orphaned = storedLongAgo(ORPHANED + ".jpg");
+
+		collector.collect();
+
+		assertThat(referenced).exists();
+		assertThat(variant).exists();
+		assertThat(inGallery).exists();
+		assertThat(orphaned).doesNotExist();
+	}
+
+	private Path storedLongAgo(String fileName) throws IOException {
+		Path file = Files.write(directory.resolve(fileName), new byte[]{1, 2, 3});
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(30).toMillis()));
+		return file;
+	}
+}
@@ -0,0 +1,205 @@
+package com.chatop.services.image_storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every image is {@value #IMAGE_SIZE} bytes filled with the first letter of its 5 character name: a record takes
+ * 128 bytes, a tombstone 28, so a segment of {@value #SEGMENT_SIZE} bytes holds three images.
+ */
+class PackedImageStorageServiceTests {
+
+	private static final int IMAGE_SIZE = 100;
+	private static final long SEGMENT_SIZE = 400;
+
+	@TempDir
+	Path directory;
+
+	private final List<PackedImageStorageService> opened = new ArrayList<>();
+
+	@AfterEach
+	void closeStores() throws IOException {
+		for (PackedImageStorageService store : opened) {
+			store.close();
+		}
+	}
+
+	@Test
+	void imagesAndDeletionsSurviveReopening() throws IOException {
+		PackedImageStorageService store = open();
+		storeAll(store, "a.jpg", "b.jpg", "c.jpg");
+		store.deleteFile("b.jpg");
+		store.close();
+
+		PackedImageStorageService reopened = open();
+
+		assertThat(read(reopened, "a.jpg")).isEqualTo(image('a'));
+		assertThat(read(reopened, "c.jpg")).isEqualTo(image('c'));
+		assertThat(reopened.exists("b.jpg")).isFalse();
+		StoredImage located = reopened.locate("c.jpg");
+		assertThat(located.length()).isEqualTo((long) IMAGE_SIZE);
+		try (FileChannel segment = FileChannel.open(located.file())) {
+			ByteBuffer data = ByteBuffer.allocate(IMAGE_SIZE);
+			segment.read(data, located.offset());
+			assertThat(data.array()).isEqualTo(image('c'));
+		}
+	}
+
+	@Test
+	void tornRecordAtTheEndOfTheLastSegmentIsTruncated() throws IOException {
+		PackedImageStorageService store = open();
+		storeAll(store, "a.jpg");
+		store.close();
+		Path segment = segment(1);
+		long intact = Files.size(segment);
+		// a record whose data was cut short by a crash
+		byte[] name = "b.jpg".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer torn = ByteBuffer.allocate(4 + 1 + 8 + 2 + name.length + 8 + 10)
+				.putInt(0x43485049)
+				.put((byte) 1)
+				.putLong(System.currentTimeMillis())
+				.putShort((short) name.length)
+				.put(name)
+				.putLong(IMAGE_SIZE)
+				.put(new byte[10])
+				.flip();
+		Files.write(segment, Arrays.copyOf(torn.array(), torn.limit()), StandardOpenOption.APPEND);
+
+		PackedImageStorageService reopened = open();
+
+		assertThat(Files.size(segment)).isEqualTo(intact);
+		assertThat(read(reopened, "a.jpg")).isEqualTo(image('a'));
+		assertThat(reopened.exists("b.jpg")).isFalse();
+
+		// appended right after the last intact record
+		storeAll(reopened, "c.jpg");
+		reopened.close();
+		PackedImageStorageService again = open();
+		assertThat(read(again, "a.jpg")).isEqualTo(image('a'));
+		assertThat(read(again, "c.jpg")).isEqualTo(image('c'));
+	}
+
+	@Test
+	void compactionMovesTheLiveImagesAndDeletesTheSegmentOnTheNextPass() throws IOException {
+		PackedImageStorageService store = open();
+		storeAll(store, "a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg", "f.jpg", "g.jpg");
+		// segment 1 is now two thirds dead
+		store.deleteFile("a.jpg");
+		store.deleteFile("b.jpg");
+
+		store.compact();
+
+		assertThat(store.locate("c.jpg").file()).isEqualTo(segment(3));
+		assertThat(read(store, "c.jpg")).isEqualTo(image('c'));
+		// still read by the requests started before the compaction
+		assertThat(Files.exists(segment(1))).isTrue();
+
+		store.compact();
+
+		assertThat(Files.exists(segment(1))).isFalse();
+		assertThat(store.locate("d.jpg").file()).isEqualTo(segment(2));
+		store.close();
+
+		PackedImageStorageService reopened = open();
+		assertThat(reopened.exists("a.jpg")).isFalse();
+		assertThat(reopened.exists("b.jpg")).isFalse();
+		for (String fileName : List.of("c.jpg", "d.jpg", "e.jpg", "f.jpg", "g.jpg")) {
+			assertThat(read(reopened, fileName)).isEqualTo(image(fileName.charAt(0)));
+		}
+	}
+
+	@Test
+	void tombstoneIsKeptWhileAnOlderSegmentHoldsTheDeletedImage() throws IOException {
+		PackedImageStorageService store = open();
+		storeAll(store, "a.jpg", "b.jpg", "c.jpg", "d.jpg");
+		store.deleteFile("a.jpg");
+		store.deleteFile("d.jpg");
+		storeAll(store, "e.jpg", "f.jpg");
+
+		// segment 2 holds the tombstones and is mostly dead, segment 1 is not compacted
+		store.compact();
+		store.compact();
+
+		assertThat(Files.exists(segment(1))).isTrue();
+		assertThat(Files.exists(segment(2))).isFalse();
+		store.close();
+
+		PackedImageStorageService reopened = open();
+		assertThat(reopened.exists("a.jpg")).isFalse();
+		assertThat(reopened.exists("d.jpg")).isFalse();
+		for (String fileName : List.of("b.jpg", "c.jpg", "e.jpg", "f.jpg")) {
+			assertThat(read(reopened, fileName)).isEqualTo(image(fileName.charAt(0)));
+		}
+	}
+
+	@Test
+	void tombstoneIsKeptWhileARetiredSegmentHoldsTheDeletedImage() throws IOException {
+		PackedImageStorageService store = open();
+		storeAll(store, "a.jpg", "b.jpg", "c.jpg", "d.jpg");
+		store.deleteFile("a.jpg");
+		store.deleteFile("b.jpg");
+		store.deleteFile("c.jpg");
+		store.deleteFile("d.jpg");
+		storeAll(store, "e.jpg", "f.jpg");
+
+		// segment 1 is dead and retired before segment 2 is compacted in the same pass
+		store.compact();
+		store.close();
+		// a crash while the retired segments were being deleted, after segment 2 but before segment 1
+		Files.delete(segment(2));
+
+		PackedImageStorageService reopened = open();
+		for (String fileName : List.of("a.jpg", "b.jpg", "c.jpg", "d.jpg")) {
+			assertThat(reopened.exists(fileName)).isFalse();
+		}
+		assertThat(read(reopened, "e.jpg")).isEqualTo(image('e'));
+		assertThat(read(reopened, "f.jpg")).isEqualTo(image('f'));
+	}
+
+	private PackedImageStorageService open() throws IOException {
+		PackedImageStorageService store = new PackedImageStorageService(event -> { },
+				directory.resolve("pack").toString(), SEGMENT_SIZE, 0.5);
+		store.open();
+		opened.add(store);
+		return store;
+	}
+
+	private void storeAll(PackedImageStorageService store, String... fileNames) throws IOException {
+		for (String fileName : fileNames) {
+			Path source = Files.createTempFile(directory, "image", null);
+			Files.write(source, image(fileName.charAt(0)));
+			store.storeFile(fileName, source);
+		}
+	}
+
+	private Path segment(int id) {
+		return directory.resolve("pack").resolve("segment-%06d.pack".formatted(id));
+	}
+
+	private static byte[] read(PackedImageStorageService store, String fileName) throws IOException {
+		try (InputStream stream = store.openStream(fileName)) {
+			return stream.readAllBytes();
+		}
+	}
+
+	private static byte[] image(char fill) {
+		byte[] image = new byte[IMAGE_SIZE];
+		Arrays.fill(image, (byte) fill);
+		return image;
+	}
+}
@@ -0,0 +1,61 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The cached rental is replaced by the changes arriving after it, unless they carry an older version, or the same
+ * version with an older {@code updated_at}.
+ */
+class RentalCacheListenerTests {
+
+	private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(RentalCacheListener.RENTALS_CACHE);
+	private final RentalCacheListener listener = new RentalCacheListener(cacheManager);
+
+	@Test
+	void newerChangeReplacesTheCachedRental() {
+		listener.onRentalChanged(new RentalChangedEvent(rental("Péniche", 1L)));
+		listener.onRentalChanged(new RentalChangedEvent(rental("Roulotte", 2L)));
+
+		assertThat(cached().name()).isEqualTo("Roulotte");
+	}
+
+	@Test
+	void changeArrivingAfterANewerOneIsSkipped() {
+		listener.onRentalChanged(new RentalChangedEvent(rental("Roulotte", 2L)));
+		listener.onRentalChanged(new RentalChangedEvent(rental("Péniche", 1L)));
+
+		assertThat(cached().name()).isEqualTo("Roulotte");
+		assertThat(cached().version()).isEqualTo(2L);
+	}
+
+	@Test
+	void changesOfTheSameVersionAreOrderedByUpdatedAt() {
+		RentalDTO withVariants = rental("Roulotte", 2L, 5);
+		listener.onRentalChanged(new RentalChangedEvent(withVariants));
+		listener.onRentalChanged(new RentalChangedEvent(rental("Roulotte", 2L, 0)));
+
+		assertThat(cached()).isEqualTo(withVariants);
+	}
+
+	private RentalDTO cached() {
+		return cacheManager.getCache(RentalCacheListener.RENTALS_CACHE).get(1, RentalDTO.class);
+	}
+
+	private static RentalDTO rental(String name, long version) {
+		return rental(name, version, 0);
+	}
+
+	// the variants recorded later on keep the version, only updated_at moves
+	private static RentalDTO rental(String name, long version, int minutesLater) {
+		LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+		return new RentalDTO(1, name, 50, 500, null, minutesLater > 0 ? Map.of("320w", "picture-320w.jpg") : null, null,
+				null, null, 1, now, now.plusHours(version).plusMinutes(minutesLater), version);
+	}
+}
@@ -0,0 +1,151 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.dtos.RentalsResponse;
+import com.chatop.repositories.RentalRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The snapshot written from its blocks, as JSON or gzip, is the {@code RentalsResponse} of the catalogue, also after
+ * a change patched into a single block, and a change older than the rental held is skipped.
+ */
+class RentalCatalogueSnapshotTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final RentalRepository rentalRepository = mock(RentalRepository.class);
+	private final RentalGalleryLoader rentalGalleryLoader = mock(RentalGalleryLoader.class);
+
+	private final List<RentalDTO> rentals = new ArrayList<>();
+	private RentalCatalogueSnapshot catalogue;
+
+	@BeforeEach
+	void loadCatalogue() {
+		// more rentals than one gallery batch, with gaps so that some blocks are partly filled
+		for (int id = 1; rentals.size() < RentalGalleryLoader.BATCH_SIZE + 500; id += id % 7 == 0 ? 3 : 1) {
+			rentals.add(rental(id, "Rental " + id, NOW.plusMinutes(id)));
+		}
+		when(rentalRepository.streamAllRentalDTOs()).thenAnswer(invocation -> rentals.stream());
+		when(rentalGalleryLoader.withGalleries(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		catalogue = new RentalCatalogueSnapshot(rentalRepository, rentalGalleryLoader, mock(PlatformTransactionManager.class),
+				objectMapper);
+		catalogue.load();
+	}
+
+	@Test
+	void snapshotIsTheCatalogueResponse() throws IOException {
+		RentalCatalogueSnapshot.Snapshot snapshot = catalogue.current();
+
+		assertThat(snapshot.count()).isEqualTo(rentals.size());
+		assertThat(snapshot.lastUpdatedAt()).isEqualTo(rentals.get(rentals.size() - 1).updated_at());
+		assertSnapshotOf(snapshot, rentals);
+	}
+
+	@Test
+	void changedAndAddedRentalsArePatchedIntoANewSnapshot() throws IOException {
+		RentalCatalogueSnapshot.Snapshot before = catalogue.current();
+		// the blocks of the first snapshot are compressed before the change, their compressed bytes are reused
+		before.writeGzip(new ByteArrayOutputStream());
+		List<RentalDTO> original = List.copyOf(rentals);
+
+		RentalDTO renamed = rental(rentals.get(100).id(), "Renamed", NOW.plusYears(1));
+		RentalDTO added = rental(9, "Added", NOW.plusYears(1));
+		catalogue.onRentalChanged(new RentalChangedEvent(renamed));
+		catalogue.onRentalChanged(new RentalChangedEvent(added));
+		rentals.set(100, renamed);
+		rentals.add(added);
+		rentals.sort(Comparator.comparing(RentalDTO::id));
+
+		RentalCatalogueSnapshot.Snapshot after = catalogue.current();
+		assertThat(after.count()).isEqualTo(original.size() + 1);
+		assertThat(after.lastUpdatedAt()).isEqualTo(NOW.plusYears(1));
+		assertSnapshotOf(after, rentals);
+		assertSnapshotOf(before, original);
+	}
+
+	@Test
+	void changesCommittedDuringTheLoadWin() throws IOException {
+		RentalDTO renamed = rental(rentals.get(0).id(), "Renamed", NOW.plusYears(1));
+		catalogue = new RentalCatalogueSnapshot(rentalRepository, rentalGalleryLoader, mock(PlatformTransactionManager.class),
+				objectMapper);
+		catalogue.onRentalChanged(new RentalChangedEvent(renamed));
+
+		assertThat(catalogue.current()).isNull();
+
+		catalogue.load();
+		rentals.set(0, renamed);
+		assertSnapshotOf(catalogue.current(), rentals);
+	}
+
+	@Test
+	void changesArrivingAfterANewerOneAreSkipped() throws IOException {
+		RentalDTO newer = rental(rentals.get(0).id(), "Newer", NOW.plusYears(2), 2L);
+		catalogue.onRentalChanged(new RentalChangedEvent(newer));
+		catalogue.onRentalChanged(new RentalChangedEvent(rental(newer.id(), "Older", NOW.plusYears(1), 1L)));
+
+		rentals.set(0, newer);
+		assertSnapshotOf(catalogue.current(), rentals);
+	}
+
+	@Test
+	void changesOlderThanTheRowsLoadedAreSkipped() throws IOException {
+		RentalDTO loaded = rental(rentals.get(0).id(), "Loaded", NOW.plusYears(2), 2L);
+		rentals.set(0, loaded);
+		catalogue = new RentalCatalogueSnapshot(rentalRepository, rentalGalleryLoader, mock(PlatformTransactionManager.class),
+				objectMapper);
+		// committed before the row was read, but its event arrives while the load is running
+		catalogue.onRentalChanged(new RentalChangedEvent(rental(loaded.id(), "Older", NOW.plusYears(1), 1L)));
+
+		catalogue.load();
+		assertSnapshotOf(catalogue.current(), rentals);
+	}
+
+	private void assertSnapshotOf(RentalCatalogueSnapshot.Snapshot snapshot, List<RentalDTO> expected) throws IOException {
+		byte[] json = objectMapper.writeValueAsBytes(new RentalsResponse(expected));
+
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		snapshot.writeJson(written);
+		assertThat(written.toByteArray()).isEqualTo(json);
+		assertThat(snapshot.jsonLength()).isEqualTo(json.length);
+
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		snapshot.writeGzip(gzip);
+		assertThat(snapshot.gzipLength()).isEqualTo(gzip.size());
+		// checks the CRC and the length of the trailer as well
+		try (GZIPInputStream decompressed = new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray()))) {
+			assertThat(decompressed.readAllBytes()).isEqualTo(json);
+		}
+	}
+
+	private static RentalDTO rental(int id, String name, LocalDateTime updatedAt) {
+		return rental(id, name, updatedAt, 0L);
+	}
+
+	private static RentalDTO rental(int id, String name, LocalDateTime updatedAt, long version) {
+		return new RentalDTO(id, name, 50, 500, "http://localhost:3001/api/images/" + id + ".jpg",
+				Map.of("thumbnail", "http://localhost:3001/api/images/" + id + "-thumbnail.webp"),
+				"Description of rental " + id, 48.85, 2.35, 1, NOW, updatedAt, version, List.of());
+	}
+}
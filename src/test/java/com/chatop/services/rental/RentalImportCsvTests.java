@@ -0,0 +1,55 @@
+package com.chatop.services.rental;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RentalImportCsvTests {
+
+	@Test
+	void plainFieldsAreSplitOnCommas() {
+		assertThat(RentalImportServiceImpl.parseCsvLine("Studio,25,450,Near the station"))
+				.containsExactly("Studio", "25", "450", "Near the station");
+	}
+
+	@Test
+	void commasInsideQuotesBelongToTheField() {
+		assertThat(RentalImportServiceImpl.parseCsvLine("\"Loft, top floor\",80,\"1,200\""))
+				.containsExactly("Loft, top floor", "80", "1,200");
+	}
+
+	@Test
+	void doubledQuotesAreAnEscapedQuote() {
+		assertThat(RentalImportServiceImpl.parseCsvLine("\"The \"\"Blue\"\" house\",\"\"\"\",end"))
+				.containsExactly("The \"Blue\" house", "\"", "end");
+	}
+
+	@Test
+	void emptyFieldsAreKept() {
+		assertThat(RentalImportServiceImpl.parseCsvLine(",a,,b,")).containsExactly("", "a", "", "b", "");
+		assertThat(RentalImportServiceImpl.parseCsvLine("\"\",x")).containsExactly("", "x");
+		assertThat(RentalImportServiceImpl.parseCsvLine("")).containsExactly("");
+	}
+
+	@Test
+	void quotesCanSurroundPartOfAField() {
+		assertThat(RentalImportServiceImpl.parseCsvLine("a\"b,c\"d,e")).containsExactly("ab,cd", "e");
+	}
+
+	@Test
+	void spacesAreKeptForTheCallerToTrim() {
+		assertThat(RentalImportServiceImpl.parseCsvLine(" a , \" b \" ")).containsExactly(" a ", "  b  ");
+	}
+
+	@Test
+	void unterminatedQuoteRunsToTheEndOfTheLine() {
+		assertThat(RentalImportServiceImpl.parseCsvLine("name,\"never closed, still here"))
+				.containsExactly("name", "never closed, still here");
+	}
+
+	@Test
+	void accentsAndSymbolsArePassedThrough() {
+		assertThat(RentalImportServiceImpl.parseCsvLine("Château,\"Vue €, très calme\""))
+				.containsExactly("Château", "Vue €, très calme");
+	}
+}
@@ -0,0 +1,155 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalRequest;
+import com.chatop.models.Rental;
+import com.chatop.models.RentalPicture;
+import com.chatop.models.User;
+import com.chatop.repositories.RentalPictureRepository;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.repositories.UserRepository;
+import com.chatop.services.image_storage.ImageStorageService;
+import com.chatop.services.image_storage.ImageVariantService;
+import com.chatop.services.image_storage.PictureVariantsGeneratedEvent;
+import com.chatop.services.upload.ChunkedUploadService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Recording the variants of a picture moves {@code updated_at} but keeps the version a client edits against, and a
+ * PUT that read the rental before keeps them.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RentalPictureVariantsListenerTests {
+
+	private static final String IMAGE_URL = "http://localhost:3001/api/images/";
+	private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+	private static final PictureVariantsGeneratedEvent VARIANTS_GENERATED =
+			new PictureVariantsGeneratedEvent("picture.jpg", Map.of("320w", "picture-320w.jpg"));
+
+	@Autowired
+	private RentalRepository rentalRepository;
+
+	@Autowired
+	private RentalPictureRepository rentalPictureRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final List<Object> published = new ArrayList<>();
+
+	private RentalPictureVariantsListener listener;
+	private RentalServiceImpl rentalService;
+	private TransactionTemplate transaction;
+	private TransactionTemplate concurrent;
+	private Rental rental;
+
+	@BeforeEach
+	void createRental() {
+		RentalGalleryLoader rentalGalleryLoader = new RentalGalleryLoader(rentalPictureRepository);
+		listener = new RentalPictureVariantsListener(rentalRepository, rentalPictureRepository, rentalGalleryLoader, published::add);
+		ReflectionTestUtils.setField(listener, "imageUrl", IMAGE_URL);
+		rentalService = new RentalServiceImpl(rentalRepository, userRepository, mock(ImageStorageService.class),
+				mock(ImageVariantService.class), mock(ChunkedUploadService.class), rentalGalleryLoader,
+				new ObjectMapper(), event -> { }, transactionManager);
+		ReflectionTestUtils.setField(rentalService, "imageUrl", IMAGE_URL);
+		transaction = new TransactionTemplate(transactionManager);
+		concurrent = new TransactionTemplate(transactionManager);
+		concurrent.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		User owner = userRepository.save(User.builder()
+				.email("owner@chatop.com")
+				.name("owner")
+				.password("password")
+				.createdAt(CREATED_AT)
+				.build());
+		rental = rentalRepository.save(Rental.builder()
+				.name("Rental")
+				.surface(50)
+				.price(500)
+				.picture(IMAGE_URL + "picture.jpg")
+				.owner(owner)
+				.createdAt(CREATED_AT)
+				.updatedAt(CREATED_AT)
+				.build());
+	}
+
+	@AfterEach
+	void deleteRental() {
+		rentalPictureRepository.deleteAll();
+		rentalRepository.deleteAll();
+		userRepository.deleteAll();
+	}
+
+	@Test
+	void variantsKeepTheVersionAndMoveUpdatedAt() {
+		concurrent.executeWithoutResult(status -> listener.onPictureVariantsGenerated(VARIANTS_GENERATED));
+
+		Rental stored = rentalRepository.findById(rental.getId()).orElseThrow();
+		assertThat(stored.getPictureVariants()).containsEntry("320w", IMAGE_URL + "picture-320w.jpg");
+		assertThat(stored.getVersion()).isEqualTo(rental.getVersion());
+		assertThat(stored.getUpdatedAt()).isAfter(CREATED_AT);
+		assertThat(published).singleElement()
+				.satisfies(event -> assertThat(((RentalChangedEvent) event).rental().version()).isEqualTo(rental.getVersion()));
+	}
+
+	@Test
+	void galleryVariantsKeepTheVersionOfTheRental() {
+		rental.setPicture(IMAGE_URL + "other.jpg");
+		rental = rentalRepository.save(rental);
+		rentalPictureRepository.save(RentalPicture.builder()
+				.rental(rental)
+				.position(0)
+				.picture(IMAGE_URL + "picture.jpg")
+				.createdAt(CREATED_AT)
+				.build());
+
+		concurrent.executeWithoutResult(status -> listener.onPictureVariantsGenerated(VARIANTS_GENERATED));
+
+		Rental stored = rentalRepository.findById(rental.getId()).orElseThrow();
+		assertThat(stored.getVersion()).isEqualTo(rental.getVersion());
+		assertThat(stored.getUpdatedAt()).isAfter(CREATED_AT);
+	}
+
+	@Test
+	void putThatReadTheRentalBeforeTheVariantsKeepsThem() {
+		RentalRequest request = RentalRequest.builder()
+				.name("Renamed")
+				.surface(60)
+				.price(600)
+				.build();
+
+		transaction.executeWithoutResult(status -> {
+			// read by the PUT, then the variants are recorded before it flushes
+			rentalRepository.findById(rental.getId()).orElseThrow();
+			concurrent.executeWithoutResult(inner -> listener.onPictureVariantsGenerated(VARIANTS_GENERATED));
+			rentalService.updateRental(rental.getId(), request);
+		});
+
+		Rental stored = rentalRepository.findById(rental.getId()).orElseThrow();
+		assertThat(stored.getName()).isEqualTo("Renamed");
+		assertThat(stored.getPictureVariants()).containsEntry("320w", IMAGE_URL + "picture-320w.jpg");
+		assertThat(stored.getVersion()).isEqualTo(rental.getVersion() + 1);
+	}
+}
@@ -0,0 +1,141 @@
+package com.chatop.services.rental;
+
+import com.chatop.dtos.RentalRequest;
+import com.chatop.exceptions.handle_exception.GlobalExceptionHandler;
+import com.chatop.models.Rental;
+import com.chatop.models.User;
+import com.chatop.repositories.RentalPictureRepository;
+import com.chatop.repositories.RentalRepository;
+import com.chatop.repositories.UserRepository;
+import com.chatop.services.image_storage.ImageStorageService;
+import com.chatop.services.image_storage.ImageVariantService;
+import com.chatop.services.upload.ChunkedUploadService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A PUT reads the rental, then flushes it under its version: a version bump committed in between, here a gallery
+ * addition touching the rental while the committed upload is looked up, makes the PUT fail with a 409.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RentalUpdateConflictTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+	@Autowired
+	private RentalRepository rentalRepository;
+
+	@Autowired
+	private RentalPictureRepository rentalPictureRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final ChunkedUploadService chunkedUploadService = mock(ChunkedUploadService.class);
+
+	private RentalServiceImpl rentalService;
+	private TransactionTemplate transaction;
+	private Rental rental;
+
+	@BeforeEach
+	void createRental() {
+		rentalService = new RentalServiceImpl(rentalRepository, userRepository, mock(ImageStorageService.class),
+				mock(ImageVariantService.class), chunkedUploadService, new RentalGalleryLoader(rentalPictureRepository),
+				new ObjectMapper(), event -> { }, transactionManager);
+		ReflectionTestUtils.setField(rentalService, "imageUrl", "http://localhost:3001/api/images/");
+		// the transaction the @Transactional proxy of the service opens around updateRental
+		transaction = new TransactionTemplate(transactionManager);
+
+		User owner = userRepository.save(User.builder()
+				.email("owner@chatop.com")
+				.name("owner")
+				.password("password")
+				.createdAt(NOW)
+				.build());
+		rental = rentalRepository.save(Rental.builder()
+				.name("Rental")
+				.surface(50)
+				.price(500)
+				.picture("http://localhost:3001/api/images/picture.jpg")
+				.owner(owner)
+				.createdAt(NOW)
+				.build());
+	}
+
+	@AfterEach
+	void deleteRental() {
+		rentalRepository.deleteAll();
+		userRepository.deleteAll();
+	}
+
+	@Test
+	void putRacingAVersionBumpIsRejectedWithAConflict() {
+		TransactionTemplate concurrent = new TransactionTemplate(transactionManager);
+		concurrent.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		when(chunkedUploadService.retrieveCommittedPicture(anyString())).thenAnswer(invocation -> {
+			// committed after the PUT has read the rental, before it flushes
+			concurrent.executeWithoutResult(status -> rentalRepository.touchRentals(List.of(rental.getId()), NOW.plusMinutes(1)));
+			return "new-picture.jpg";
+		});
+		RentalRequest request = RentalRequest.builder()
+				.name("Renamed")
+				.surface(60)
+				.price(600)
+				.uploadId("upload")
+				.build();
+
+		assertThatThrownBy(() -> transaction.execute(status -> rentalService.updateRental(rental.getId(), request)))
+				.isInstanceOf(ObjectOptimisticLockingFailureException.class)
+				.satisfies(conflict -> {
+					ProblemDetail problem = new GlobalExceptionHandler()
+							.handleObjectOptimisticLockingFailureException((ObjectOptimisticLockingFailureException) conflict);
+					assertThat(problem.getStatus()).isEqualTo(HttpStatus.CONFLICT.value());
+					assertThat(problem.getTitle()).isEqualTo("Rental modified concurrently");
+				});
+
+		Rental stored = rentalRepository.findById(rental.getId()).orElseThrow();
+		assertThat(stored.getName()).isEqualTo("Rental");
+		assertThat(stored.getVersion()).isEqualTo(rental.getVersion() + 1);
+	}
+
+	@Test
+	void putWithoutConcurrentChangeIsApplied() {
+		RentalRequest request = RentalRequest.builder()
+				.name("Renamed")
+				.surface(60)
+				.price(600)
+				.build();
+
+		transaction.execute(status -> rentalService.updateRental(rental.getId(), request));
+
+		Rental stored = rentalRepository.findById(rental.getId()).orElseThrow();
+		assertThat(stored.getName()).isEqualTo("Renamed");
+		assertThat(stored.getVersion()).isEqualTo(rental.getVersion() + 1);
+	}
+}
@@ -0,0 +1,118 @@
+package com.chatop.services.rental_search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostingListTests {
+
+	@Test
+	void idsAndFrequenciesRoundTripAcrossVarIntLengths() {
+		// deltas of 127, 128, 2^14, 2^21 and 2^28, then the largest id: one to five bytes each
+		int[] ids = {0, 127, 255, 16_639, 2_113_791, 270_549_247, Integer.MAX_VALUE};
+		PostingList postingList = new PostingList();
+		for (int id : ids) {
+			postingList.add(id, id % 1000 + 1);
+		}
+
+		Map<Integer, Integer> expected = new TreeMap<>();
+		for (int id : ids) {
+			expected.put(id, id % 1000 + 1);
+		}
+		assertThat(read(postingList)).isEqualTo(expected);
+		assertThat(postingList.documentCount()).isEqualTo(ids.length);
+	}
+
+	@Test
+	void largeFrequenciesRoundTrip() {
+		PostingList postingList = new PostingList();
+		postingList.add(3, 1);
+		postingList.add(4, 300);
+		postingList.add(9, Integer.MAX_VALUE);
+
+		assertThat(read(postingList)).isEqualTo(Map.of(3, 1, 4, 300, 9, Integer.MAX_VALUE));
+	}
+
+	@Test
+	void outOfOrderAddsKeepTheIdsSorted() {
+		PostingList postingList = new PostingList();
+		postingList.add(50, 1);
+		postingList.add(10, 2);
+		postingList.add(30, 3);
+		postingList.add(0, 4);
+
+		assertThat(read(postingList)).isEqualTo(Map.of(0, 4, 10, 2, 30, 3, 50, 1));
+		assertThat(new ArrayList<>(read(postingList).keySet())).containsExactly(0, 10, 30, 50);
+	}
+
+	@Test
+	void addingAnExistingIdReplacesItsFrequency() {
+		PostingList postingList = new PostingList();
+		postingList.add(10, 1);
+		postingList.add(20, 1);
+		postingList.add(10, 7);
+
+		assertThat(read(postingList)).isEqualTo(Map.of(10, 7, 20, 1));
+		assertThat(postingList.documentCount()).isEqualTo(2);
+	}
+
+	@Test
+	void removeDropsOnlyTheGivenId() {
+		PostingList postingList = new PostingList();
+		postingList.add(1, 1);
+		postingList.add(200, 2);
+		postingList.add(40_000, 3);
+
+		postingList.remove(200);
+		postingList.remove(12345);
+		assertThat(read(postingList)).isEqualTo(Map.of(1, 1, 40_000, 3));
+
+		postingList.remove(1);
+		postingList.remove(40_000);
+		assertThat(postingList.isEmpty()).isTrue();
+		assertThat(postingList.cursor().next()).isFalse();
+
+		postingList.add(5, 2);
+		assertThat(read(postingList)).isEqualTo(Map.of(5, 2));
+	}
+
+	@Test
+	void randomChangesMatchASortedMap() {
+		Random random = new Random(42);
+		PostingList postingList = new PostingList();
+		Map<Integer, Integer> expected = new TreeMap<>();
+		for (int step = 0; step < 5000; step++) {
+			int id = random.nextInt(1 << random.nextInt(31));
+			if (random.nextInt(4) == 0) {
+				postingList.remove(id);
+				expected.remove(id);
+			} else {
+				int frequency = 1 + random.nextInt(1 << random.nextInt(20));
+				postingList.add(id, frequency);
+				expected.put(id, frequency);
+			}
+		}
+
+		assertThat(read(postingList)).isEqualTo(expected);
+		assertThat(postingList.documentCount()).isEqualTo(expected.size());
+	}
+
+	private static Map<Integer, Integer> read(PostingList postingList) {
+		Map<Integer, Integer> postings = new TreeMap<>();
+		List<Integer> order = new ArrayList<>();
+		PostingList.Cursor cursor = postingList.cursor();
+		while (cursor.next()) {
+			postings.put(cursor.id(), cursor.frequency());
+			order.add(cursor.id());
+		}
+		assertThat(order).isSorted();
+		assertThat(order).doesNotHaveDuplicates();
+		return postings;
+	}
+}
@@ -0,0 +1,102 @@
+package com.chatop.services.rental_search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every estimate is within the relative accuracy of the exact value at rank {@code floor(q * (n - 1))}.
+ */
+class QuantileSketchTests {
+
+	private static final double ACCURACY = 0.01;
+	private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+
+	private final Random random = new Random(11);
+
+	@Test
+	void estimatesAreWithinTheRelativeAccuracy() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		List<Double> values = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++) {
+			// log-normal, like prices: a long tail over several orders of magnitude
+			double value = Math.exp(6 + 1.5 * random.nextGaussian());
+			sketch.add(value);
+			values.add(value);
+		}
+
+		assertWithinAccuracy(sketch, values);
+	}
+
+	@Test
+	void valuesFarApartAreHandled() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		List<Double> values = new ArrayList<>();
+		// decreasing first, so that the buckets grow on both sides
+		for (double value : new double[]{1e6, 5e5, 3, 0.002, 1e9, 42, 0.5, 7e7}) {
+			sketch.add(value);
+			values.add(value);
+		}
+
+		assertWithinAccuracy(sketch, values);
+	}
+
+	@Test
+	void removedValuesNoLongerCount() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		List<Double> values = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			double value = 50 + random.nextInt(5000);
+			sketch.add(value);
+			values.add(value);
+		}
+		Collections.shuffle(values, random);
+		for (double value : new ArrayList<>(values.subList(0, 15_000))) {
+			sketch.remove(value);
+		}
+		values = new ArrayList<>(values.subList(15_000, values.size()));
+
+		assertThat(sketch.total()).isEqualTo(5_000L);
+		assertWithinAccuracy(sketch, values);
+	}
+
+	@Test
+	void zeroAndNegativeValuesAreEstimatedAsZero() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		sketch.add(0);
+		sketch.add(-10);
+		sketch.add(100);
+		sketch.add(200);
+
+		assertThat(sketch.quantile(0)).isEqualTo(0d);
+		assertThat(sketch.quantile(0.3)).isEqualTo(0d);
+		assertThat(Math.abs(sketch.quantile(1) - 200)).isLessThanOrEqualTo(200 * ACCURACY);
+	}
+
+	@Test
+	void emptySketchHasNoQuantile() {
+		QuantileSketch sketch = new QuantileSketch(ACCURACY);
+		assertThat(sketch.quantile(0.5)).isNull();
+
+		sketch.add(10);
+		sketch.remove(10);
+		assertThat(sketch.total()).isZero();
+		assertThat(sketch.quantile(0.5)).isNull();
+	}
+
+	private static void assertWithinAccuracy(QuantileSketch sketch, List<Double> values) {
+		List<Double> sorted = new ArrayList<>(values);
+		Collections.sort(sorted);
+		for (double quantile : QUANTILES) {
+			double exact = sorted.get((int) Math.floor(quantile * (sorted.size() - 1)));
+			double estimate = sketch.quantile(quantile);
+			// a hair of slack for the rounding of log and pow
+			assertThat(Math.abs(estimate - exact)).isLessThanOrEqualTo(exact * ACCURACY * (1 + 1e-9));
+		}
+	}
+}
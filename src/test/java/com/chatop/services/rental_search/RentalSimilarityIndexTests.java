@@ -0,0 +1,158 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.services.rental.RentalChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The KD-tree search, alone and together with the rentals still pending a rebuild, finds the same neighbours as a
+ * brute-force scan. The features are scaled as the index does, with the statistics of its last build.
+ */
+class RentalSimilarityIndexTests {
+
+	private static final int K = 10;
+	private static final double EPSILON = 1e-4;
+
+	private final Random random = new Random(7);
+	private final RentalSimilarityIndex index = new RentalSimilarityIndex();
+	private final Map<Integer, RentalDTO> rentals = new HashMap<>();
+
+	@Test
+	void treeSearchMatchesBruteForce() {
+		load(3000);
+
+		checkQueries(Statistics.of(rentals), 300);
+	}
+
+	@Test
+	void pendingRentalsAreSearchedAndTheirStaleTreeEntriesSkipped() {
+		load(3000);
+		Statistics statistics = Statistics.of(rentals);
+
+		// fewer changes than the rebuild threshold: they stay pending, scaled with the statistics of the build
+		for (int i = 0; i < 500; i++) {
+			change(randomRental(random.nextInt(3500)));
+		}
+
+		checkQueries(statistics, 300);
+	}
+
+	@Test
+	void searchMatchesBruteForceAfterARebuild() {
+		load(3000);
+		// the 1025th distinct pending rental triggers a rebuild, with the statistics of every rental
+		int[] changed = random.ints(0, 4000).distinct().limit(1025).toArray();
+		for (int id : changed) {
+			change(randomRental(id));
+		}
+
+		checkQueries(Statistics.of(rentals), 300);
+	}
+
+	@Test
+	void theRentalItselfIsExcludedAndAtMostTheOthersAreReturned() {
+		load(5);
+
+		for (int id : rentals.keySet()) {
+			int[] nearest = index.nearest(id, K);
+			assertThat(nearest).hasSize(4);
+			assertThat(Arrays.stream(nearest).anyMatch(neighbour -> neighbour == id)).isFalse();
+		}
+	}
+
+	@Test
+	void containsOnlyIndexedRentals() {
+		load(10);
+
+		assertThat(index.contains(3)).isTrue();
+		assertThat(index.contains(10)).isFalse();
+		assertThat(index.contains(1_000_000)).isFalse();
+	}
+
+	private void checkQueries(Statistics statistics, int queries) {
+		Integer[] ids = rentals.keySet().toArray(Integer[]::new);
+		for (int i = 0; i < queries; i++) {
+			int id = ids[random.nextInt(ids.length)];
+			int[] nearest = index.nearest(id, K);
+
+			double[] expected = rentals.keySet().stream()
+					.filter(other -> other != id)
+					.mapToDouble(other -> statistics.distance(rentals.get(id), rentals.get(other)))
+					.sorted()
+					.limit(K)
+					.toArray();
+			double[] found = Arrays.stream(nearest)
+					.mapToDouble(other -> statistics.distance(rentals.get(id), rentals.get(other)))
+					.toArray();
+
+			assertThat(nearest).hasSize(K);
+			assertThat(Arrays.stream(nearest).distinct().count()).isEqualTo(K);
+			assertThat(Arrays.stream(nearest).anyMatch(other -> other == id)).isFalse();
+			// compared by distance, rentals at the same distance may come in any order
+			for (int rank = 0; rank < K; rank++) {
+				assertThat(Math.abs(found[rank] - expected[rank])).isLessThan(EPSILON * (1 + expected[rank]));
+			}
+		}
+	}
+
+	private void load(int count) {
+		for (int id = 0; id < count; id++) {
+			RentalDTO rental = randomRental(id);
+			rentals.put(id, rental);
+			index.loadRental(rental);
+		}
+		index.finishLoad();
+	}
+
+	private void change(RentalDTO rental) {
+		rentals.put(rental.id(), rental);
+		index.onRentalChanged(new RentalChangedEvent(rental));
+	}
+
+	private RentalDTO randomRental(int id) {
+		LocalDateTime createdAt = LocalDateTime.of(2020, 1, 1, 0, 0).plusDays(random.nextInt(1000));
+		return new RentalDTO(id, "Rental " + id, 10 + random.nextInt(190), 100 + random.nextInt(2900), null, null, null,
+				null, null, 1, createdAt, null, 0L);
+	}
+
+	private record Statistics(double[] means, double[] scales) {
+
+		static Statistics of(Map<Integer, RentalDTO> rentals) {
+			double[] means = new double[4];
+			double[] scales = new double[4];
+			for (int dimension = 0; dimension < 4; dimension++) {
+				final int current = dimension;
+				double mean = rentals.values().stream().mapToDouble(rental -> features(rental)[current]).average().orElse(0);
+				double variance = rentals.values().stream()
+						.mapToDouble(rental -> Math.pow(features(rental)[current] - mean, 2)).average().orElse(0);
+				means[dimension] = mean;
+				scales[dimension] = 1 / Math.sqrt(variance);
+			}
+			return new Statistics(means, scales);
+		}
+
+		double distance(RentalDTO first, RentalDTO second) {
+			double[] a = features(first);
+			double[] b = features(second);
+			double sum = 0;
+			for (int dimension = 0; dimension < 4; dimension++) {
+				double difference = (a[dimension] - b[dimension]) * scales[dimension];
+				sum += difference * difference;
+			}
+			return sum;
+		}
+
+		private static double[] features(RentalDTO rental) {
+			return new double[]{rental.price(), rental.surface(), rental.price() / rental.surface(),
+					rental.created_at().toLocalDate().toEpochDay()};
+		}
+	}
+}
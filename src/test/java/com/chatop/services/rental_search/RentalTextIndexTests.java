@@ -0,0 +1,134 @@
+package com.chatop.services.rental_search;
+
+import com.chatop.dtos.RentalDTO;
+import com.chatop.services.rental.RentalChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RentalTextIndexTests {
+
+	private final RentalTextIndex index = new RentalTextIndex();
+
+	@Test
+	void termInTheNameRanksAboveTheSameTermInTheDescription() {
+		load(rental(1, "Appartement calme", "Grande terrasse au soleil"),
+				rental(2, "Terrasse ensoleillée", "Appartement calme"));
+
+		assertThat(index.search("terrasse", 0, 10).ids()).containsExactly(2, 1);
+	}
+
+	@Test
+	void shorterRentalRanksAboveALongerOneWithTheSameFrequency() {
+		load(rental(1, "Maison", "Piscine chauffée, jardin arboré, garage double, cave voûtée, grenier aménagé"),
+				rental(2, "Maison", "Piscine chauffée"));
+
+		assertThat(index.search("piscine", 0, 10).ids()).containsExactly(2, 1);
+	}
+
+	@Test
+	void rareTermWeighsMoreThanACommonOne() {
+		load(rental(1, "Studio", "Parking"),
+				rental(2, "Studio", "Sauna"),
+				rental(3, "Studio", "Parking"),
+				rental(4, "Studio", "Parking"));
+
+		// rentals 1 and 2 both match one term of the query, "sauna" is in one rental only
+		assertThat(index.search("sauna parking", 0, 10).ids()[0]).isEqualTo(2);
+	}
+
+	@Test
+	void matchingMoreTermsRanksHigher() {
+		load(rental(1, "Loft", "Vue mer"),
+				rental(2, "Loft", "Vue mer balcon"),
+				rental(3, "Loft", "Balcon"));
+
+		assertThat(index.search("vue mer balcon", 0, 10).ids()[0]).isEqualTo(2);
+	}
+
+	@Test
+	void accentsAndCaseAreFolded() {
+		load(rental(1, "Château", "Écuries"), rental(2, "Moulin", "Rivière"));
+
+		assertThat(index.search("CHATEAU", 0, 10).ids()).containsExactly(1);
+		assertThat(index.search("ecuries", 0, 10).ids()).containsExactly(1);
+	}
+
+	@Test
+	void pagesSliceTheFullRankingAndTotalCountsEveryMatch() {
+		RentalDTO[] rentals = new RentalDTO[30];
+		for (int i = 0; i < rentals.length; i++) {
+			// a growing number of words other than "jardin", so that the ranking is strict
+			rentals[i] = rental(i + 1, "Jardin", "mot ".repeat(i));
+		}
+		load(rentals);
+
+		int[] all = index.search("jardin", 0, 30).ids();
+		assertThat(index.search("jardin", 0, 30).total()).isEqualTo(30);
+		assertThat(all).hasSize(30);
+		assertThat(all[0]).isEqualTo(1);
+		assertThat(all[29]).isEqualTo(30);
+
+		assertThat(index.search("jardin", 10, 5).ids()).containsExactly(11, 12, 13, 14, 15);
+		assertThat(index.search("jardin", 28, 5).ids()).containsExactly(29, 30);
+		assertThat(index.search("jardin", 40, 5).ids()).isEmpty();
+		assertThat(index.search("jardin", 40, 5).total()).isEqualTo(30);
+	}
+
+	@Test
+	void updatedRentalIsFoundByItsNewTermsOnly() {
+		load(rental(1, "Péniche", "Sur la Seine"), rental(2, "Cabane", "Dans les arbres"));
+
+		index.onRentalChanged(new RentalChangedEvent(rental(1, "Roulotte", "Dans un pré")));
+
+		assertThat(index.search("peniche", 0, 10).total()).isZero();
+		assertThat(index.search("roulotte", 0, 10).ids()).containsExactly(1);
+		assertThat(index.search("seine pre", 0, 10).ids()).containsExactly(1);
+	}
+
+	@Test
+	void changeArrivingAfterANewerOneIsSkipped() {
+		load(rental(1, "Péniche", "Sur la Seine"));
+
+		index.onRentalChanged(new RentalChangedEvent(rental(1, "Roulotte", "Dans un pré", 2L)));
+		index.onRentalChanged(new RentalChangedEvent(rental(1, "Cabane", "Dans les arbres", 1L)));
+
+		assertThat(index.search("roulotte", 0, 10).ids()).containsExactly(1);
+		assertThat(index.search("cabane", 0, 10).total()).isZero();
+	}
+
+	@Test
+	void changeBufferedDuringTheLoadIsSkippedWhenOlderThanTheRowRead() {
+		index.onRentalChanged(new RentalChangedEvent(rental(1, "Cabane", "Dans les arbres", 1L)));
+		load(rental(1, "Roulotte", "Dans un pré", 2L));
+
+		assertThat(index.search("roulotte", 0, 10).ids()).containsExactly(1);
+		assertThat(index.search("cabane", 0, 10).total()).isZero();
+	}
+
+	@Test
+	void unknownTermsFindNothing() {
+		load(rental(1, "Yourte", "Dans la steppe"));
+
+		assertThat(index.search("igloo", 0, 10).ids()).isEmpty();
+		assertThat(index.search("", 0, 10).total()).isZero();
+	}
+
+	private void load(RentalDTO... rentals) {
+		for (RentalDTO rental : rentals) {
+			index.loadRental(rental);
+		}
+		index.finishLoad();
+	}
+
+	static RentalDTO rental(int id, String name, String description) {
+		return rental(id, name, description, 0L);
+	}
+
+	static RentalDTO rental(int id, String name, String description, long version) {
+		LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id);
+		return new RentalDTO(id, name, 50, 500, null, null, description, null, null, 1, createdAt, null, version);
+	}
+}
@@ -0,0 +1,93 @@
+package com.chatop.services.upload;
+
+import com.chatop.dtos.UploadResponse;
+import com.chatop.exceptions.TooManyUploadsException;
+import com.chatop.exceptions.UploadNotFoundException;
+import com.chatop.services.image_storage.ImageStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Only the uploads still receiving chunks count against {@value #MAX_SESSIONS_PER_USER} sessions per user.
+ */
+class ChunkedUploadServiceImplTests {
+
+	private static final int MAX_SESSIONS_PER_USER = 3;
+	private static final int CHUNK_SIZE = 4;
+
+	@TempDir
+	Path directory;
+
+	private final ImageStorageService imageStorageService = mock(ImageStorageService.class);
+
+	private ChunkedUploadServiceImpl uploads;
+
+	@BeforeEach
+	void createService() throws IOException {
+		when(imageStorageService.savePicture(any(Path.class))).thenReturn("picture.png");
+		when(imageStorageService.touch(anyString())).thenReturn(true);
+		uploads = new ChunkedUploadServiceImpl(imageStorageService, directory.toString(), CHUNK_SIZE, 1024,
+				Duration.ofHours(24), MAX_SESSIONS_PER_USER, 1000);
+		ReflectionTestUtils.setField(uploads, "imageUrl", "http://localhost:3001/api/images/");
+		uploads.init();
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("owner@chatop.com", null));
+	}
+
+	@AfterEach
+	void clearAuthentication() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void committedUploadsDoNotCountAgainstTheLimit() throws IOException {
+		for (int i = 0; i < 3 * MAX_SESSIONS_PER_USER; i++) {
+			UploadResponse committed = upload();
+
+			assertThat(committed.status()).isEqualTo(UploadResponse.COMMITTED);
+		}
+	}
+
+	@Test
+	void attachedUploadsAreClosed() throws IOException {
+		for (int i = 0; i < 3 * MAX_SESSIONS_PER_USER; i++) {
+			String uploadId = upload().upload_id();
+
+			assertThat(uploads.retrieveCommittedPicture(uploadId)).isEqualTo("picture.png");
+			assertThatThrownBy(() -> uploads.retrieveUpload(uploadId)).isInstanceOf(UploadNotFoundException.class);
+			assertThatThrownBy(() -> uploads.retrieveCommittedPicture(uploadId)).isInstanceOf(UploadNotFoundException.class);
+		}
+	}
+
+	@Test
+	void uploadsInProgressAreLimited() throws IOException {
+		for (int i = 0; i < MAX_SESSIONS_PER_USER; i++) {
+			uploads.createUpload(6L);
+		}
+
+		assertThatThrownBy(() -> uploads.createUpload(6L)).isInstanceOf(TooManyUploadsException.class);
+	}
+
+	private UploadResponse upload() throws IOException {
+		String uploadId = uploads.createUpload(6L).upload_id();
+		uploads.writeChunk(uploadId, 0, new ByteArrayInputStream(new byte[CHUNK_SIZE]));
+		uploads.writeChunk(uploadId, 1, new ByteArrayInputStream(new byte[2]));
+		return uploads.commitUpload(uploadId);
+	}
+}